@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies the inferencing for committed transactions on a background thread.
+ * <p>
+ * Each committed change set gets a version number. The change sets are processed in the order of their
+ * versions. All change sets that are pending when the background thread becomes idle are merged and
+ * processed within one transaction. A coalescing window additionally delays the processing of a change set
+ * to collect the changes of following commits. The version of the last processed change set is the watermark
+ * that can be used by readers to wait until the inferred statements are up-to-date.
+ * <p>
+ * The watermark also advances if the inferencing for a change set fails. The failure is recorded and the next
+ * change set is processed by a full inferencing run that recomputes all values.
+ */
+class AsyncInferencer {
+	static private final Logger logger = LoggerFactory.getLogger(AsyncInferencer.class);
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	/**
+	 * The changes of one or more committed transactions.
+	 */
+	static class ChangeSet {
+		final Map<Resource, List<Resource>> changedResources;
+		final Map<Resource, Set<IRI>> changedProperties;
+		final Map<Resource, List<IRI>> changedClasses;
+
+		ChangeSet(Map<Resource, List<Resource>> changedResources, Map<Resource, Set<IRI>> changedProperties,
+		          Map<Resource, List<IRI>> changedClasses) {
+			this.changedResources = changedResources;
+			this.changedProperties = changedProperties;
+			this.changedClasses = changedClasses;
+		}
+
+		/**
+		 * Adds the changes of a later transaction to this change set.
+		 */
+		void merge(ChangeSet other) {
+			other.changedResources.forEach((resource, removedTypes) -> {
+				List<Resource> types = changedResources.get(resource);
+				if (types == null || types.isEmpty()) {
+					changedResources.put(resource, removedTypes);
+				} else if (!removedTypes.isEmpty()) {
+					Set<Resource> merged = new LinkedHashSet<>(types);
+					merged.addAll(removedTypes);
+					changedResources.put(resource, new ArrayList<>(merged));
+				}
+			});
+			other.changedProperties.forEach((resource, properties) -> {
+				changedProperties.computeIfAbsent(resource, r -> new HashSet<>()).addAll(properties);
+			});
+			other.changedClasses.forEach((clazz, properties) -> {
+				List<IRI> existing = changedClasses.get(clazz);
+				if (existing == null) {
+					changedClasses.put(clazz, properties);
+				} else {
+					Set<IRI> merged = new LinkedHashSet<>(existing);
+					merged.addAll(properties);
+					changedClasses.put(clazz, new ArrayList<>(merged));
+				}
+			});
+		}
+	}
+
+	private final NumerateWebSail sail;
+	private final long windowNanos;
+	private final int maxChanges;
+	private final Thread thread;
+
+	// the following fields are guarded by this
+	private final Queue<ChangeSet> pending = new ArrayDeque<>();
+	private long pendingSince;
+	private int pendingChanges;
+	private long committedVersion;
+	private long inferredVersion;
+	private Throwable failure;
+	private long failedVersion;
+	private boolean stopped;
+
+	/**
+	 * Creates and starts a new inferencer.
+	 *
+	 * @param sail       the sail
+	 * @param window     the time in milliseconds to wait for further changes after a commit
+	 * @param maxChanges the number of changed resources that ends the waiting before the window has elapsed
+	 */
+	AsyncInferencer(NumerateWebSail sail, long window, int maxChanges) {
+		this.sail = sail;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+		this.maxChanges = maxChanges;
+		this.thread = new Thread(this::run, "numerateweb-async-inferencer-" + threadNumber.incrementAndGet());
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Schedules the inferencing for the changes of a committed transaction.
+	 *
+	 * @param changes the committed changes
+	 * @return the version of the change set
+	 */
+	synchronized long submit(ChangeSet changes) {
+		if (pending.isEmpty()) {
+			pendingSince = System.nanoTime();
+		}
+		pending.add(changes);
+		pendingChanges += changes.changedResources.size();
+		notifyAll();
+		return ++committedVersion;
+	}
+
+	private void run() {
+		while (true) {
+			ChangeSet changes;
+			long version;
+			synchronized (this) {
+				try {
+					while (pending.isEmpty() && !stopped) {
+						wait();
+					}
+					// wait for further changes until the window has elapsed
+					long remaining;
+					while (!stopped && pendingChanges < maxChanges
+							&& (remaining = pendingSince + windowNanos - System.nanoTime()) > 0) {
+						TimeUnit.NANOSECONDS.timedWait(this, remaining);
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (pending.isEmpty()) {
+					return;
+				}
+				changes = pending.remove();
+				while (!pending.isEmpty()) {
+					changes.merge(pending.remove());
+				}
+				pendingChanges = 0;
+				version = committedVersion;
+			}
+			apply(changes, version);
+		}
+	}
+
+	private void apply(ChangeSet changes, long version) {
+		try (NumerateWebSailConnection connection = (NumerateWebSailConnection) sail.getConnection()) {
+			connection.applyInferencing(changes);
+		} catch (Throwable e) {
+			// keep the thread alive, the next change set triggers a full inferencing run
+			logger.error("Inferencing for version {} failed, recomputing all values with the next change", version, e);
+			sail.initialInferencingDone = false;
+			synchronized (this) {
+				failure = e;
+				failedVersion = version;
+			}
+		} finally {
+			synchronized (this) {
+				inferredVersion = version;
+				notifyAll();
+			}
+		}
+	}
+
+	synchronized long getCommittedVersion() {
+		return committedVersion;
+	}
+
+	synchronized long getInferredVersion() {
+		return inferredVersion;
+	}
+
+	/**
+	 * Returns the error of the last failed change set or <code>null</code> if no change set has failed.
+	 */
+	synchronized Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the version of the last failed change set or <code>0</code> if no change set has failed.
+	 */
+	synchronized long getFailedVersion() {
+		return failedVersion;
+	}
+
+	/**
+	 * Waits until the change set with the given version has been processed.
+	 *
+	 * @return <code>true</code> if the version has been processed or <code>false</code> if the timeout elapsed
+	 */
+	boolean await(long version, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this) {
+			while (inferredVersion < version) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Processes all pending change sets without waiting for the coalescing window and stops the background
+	 * thread.
+	 */
+	void shutDown() {
+		synchronized (this) {
+			stopped = true;
+			notifyAll();
+		}
+		try {
+			thread.join(TimeUnit.MINUTES.toMillis(1));
+			if (thread.isAlive()) {
+				logger.warn("Pending inferencing has not finished within one minute");
+				thread.interrupt();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			thread.interrupt();
+		}
+		if (getInferredVersion() < getCommittedVersion()) {
+			// the dependency index is incomplete and must not be stored
+			sail.initialInferencingDone = false;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider interface for the caches that are used by the evaluator of a {@link NumerateWebSail}.
+ * <p>
+ * Implementations are registered via <code>META-INF/services/org.numerateweb.rdf4j.CacheProvider</code>
+ * and selected by their name with {@link NumerateWebSail#setCacheProvider(String)}. Providers whose
+ * dependencies are not available are ignored.
+ */
+public interface CacheProvider {
+	/**
+	 * Returns the name of this provider, e.g. <code>guava</code>.
+	 */
+	String getName();
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param spec the specification of the cache in the format of Guava's <code>CacheBuilderSpec</code>
+	 * @return the new cache
+	 */
+	<K, V> InstrumentedCache<K, V> createCache(String spec);
+
+	/**
+	 * Returns the registered provider with the given name.
+	 *
+	 * @param name the name of the provider
+	 * @return the provider
+	 * @throws IllegalArgumentException if no provider with the given name exists
+	 */
+	static CacheProvider forName(String name) {
+		IllegalArgumentException unknown = new IllegalArgumentException("Unknown cache provider: " + name);
+		Iterator<ServiceLoader.Provider<CacheProvider>> providers = ServiceLoader.load(CacheProvider.class,
+				CacheProvider.class.getClassLoader()).stream().iterator();
+		while (providers.hasNext()) {
+			CacheProvider provider;
+			try {
+				provider = providers.next().get();
+			} catch (ServiceConfigurationError | LinkageError e) {
+				// the provider depends on an optional library that is not available
+				unknown.addSuppressed(e);
+				continue;
+			}
+			if (provider.getName().equals(name)) {
+				return provider;
+			}
+		}
+		throw unknown;
+	}
+}
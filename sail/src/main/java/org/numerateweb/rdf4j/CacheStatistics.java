@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Snapshot of the statistics of a cache used by the {@link NumerateWebSail}.
+ */
+public class CacheStatistics {
+	private final String name;
+	private final String spec;
+	private final long size;
+	private final CacheStats stats;
+
+	CacheStatistics(String name, String spec, long size, CacheStats stats) {
+		this.name = name;
+		this.spec = spec;
+		this.size = size;
+		this.stats = stats;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSpec() {
+		return spec;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getHitCount() {
+		return stats.hitCount();
+	}
+
+	public long getMissCount() {
+		return stats.missCount();
+	}
+
+	public double getHitRate() {
+		return stats.hitRate();
+	}
+
+	public long getEvictionCount() {
+		return stats.evictionCount();
+	}
+
+	public long getLoadCount() {
+		return stats.loadCount();
+	}
+
+	/**
+	 * Returns the total time in nanoseconds that has been spent for loading new values.
+	 */
+	public long getTotalLoadTime() {
+		return stats.totalLoadTime();
+	}
+
+	/**
+	 * Returns the average time in nanoseconds that has been spent for loading a new value.
+	 */
+	public double getAverageLoadPenalty() {
+		return stats.averageLoadPenalty();
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + spec + "): size=" + size + ", " + stats;
+	}
+}
@@ -15,16 +15,75 @@
  */
 package org.numerateweb.rdf4j;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A wrapper for caching a specific RDF resource (entity) with its properties in
  * different contexts (named graphs or models).
+ * <p>
+ * Properties and contexts are interned to small ints by the {@link Ids} of the owning sail. The values are
+ * stored in a flat open-addressing table keyed by (property, context). Readers do not lock, writers are synchronized. Overwriting an
+ * existing mapping does not allocate.
  */
 class CachedEntity {
 	static final Object NULL = new Object();
-	Map<Object, Data> values = new HashMap<>();
+
+	private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+	/**
+	 * Ids of the properties and contexts of all entities of one sail, <code>0</code> is never used as id.
+	 */
+	static final class Ids {
+		private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<>();
+		private final AtomicInteger nextId = new AtomicInteger(1);
+
+		int id(Object object) {
+			Integer id = ids.get(object);
+			if (id == null) {
+				id = ids.computeIfAbsent(object, o -> nextId.getAndIncrement());
+			}
+			return id;
+		}
+
+		Integer get(Object object) {
+			return ids.get(object);
+		}
+
+		int size() {
+			return ids.size();
+		}
+
+		/**
+		 * Removes all interned objects. Ids are not reused, hence existing entities do not return wrong
+		 * values afterwards but are unable to find their previous values.
+		 */
+		void clear() {
+			ids.clear();
+		}
+	}
+
+	private static final class Table {
+		final long[] keys;
+		final Object[] values;
+		// number of used keys, including those whose values have been removed
+		int used;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new Object[capacity];
+		}
+	}
+
+	private final Ids ids;
+	private volatile Table table = new Table(4);
+
+	CachedEntity(Ids ids) {
+		this.ids = ids;
+	}
 
 	/**
 	 * Associates the specified value with the specified property for an entity
@@ -37,19 +96,29 @@ class CachedEntity {
 	 *            property with which the specified value is to be associated.
 	 * @param value
 	 *            value to be associated with the specified property.
+	 * @return <code>true</code> if the table of the entity has grown and its weight should be estimated again,
+	 *         else <code>false</code>
 	 */
-	public synchronized void put(Object context, Object property, Object value) {
-		if (context == null) {
-			context = NULL;
-		}
-		Data data = values.get(property);
-		Data newData = new Data(context, value);
-		if (data != null) {
-			data = data.removeFirst(context).append(newData);
-		} else {
-			data = newData;
-		}
-		values.put(property, data);
+	public synchronized boolean put(Object context, Object property, Object value) {
+		long key = key(ids.id(context == null ? NULL : context), ids.id(property));
+		Table t = table;
+		int i = indexOf(t, key);
+		if (t.keys[i] == key) {
+			VALUES.setRelease(t.values, i, value);
+			return false;
+		}
+		boolean grown = false;
+		if ((t.used + 1) * 4 > t.keys.length * 3) {
+			Table old = t;
+			t = rehash(t);
+			i = indexOf(t, key);
+			grown = t.keys.length > old.keys.length;
+		}
+		// publish the value before the key so that readers never see an incomplete entry
+		VALUES.setRelease(t.values, i, value);
+		KEYS.setRelease(t.keys, i, key);
+		t.used++;
+		return grown;
 	}
 
 	/**
@@ -63,9 +132,34 @@ class CachedEntity {
 	 *            property whose mapping is to be removed from the entity
 	 */
 	public synchronized void remove(Object context, Object property) {
-		Data data = values.get(property);
-		if (data != null) {
-			values.put(property, data.removeFirst(context == null ? NULL : context));
+		Integer contextId = ids.get(context == null ? NULL : context);
+		Integer propertyId = ids.get(property);
+		if (contextId != null && propertyId != null) {
+			long key = key(contextId, propertyId);
+			Table t = table;
+			int i = indexOf(t, key);
+			if (t.keys[i] == key) {
+				// the key is kept to be reused by a later put
+				VALUES.setRelease(t.values, i, null);
+			}
+		}
+	}
+
+	/**
+	 * Removes the mappings for a property in all contexts from the entity.
+	 *
+	 * @param property
+	 *            property whose mappings are to be removed from the entity
+	 */
+	public synchronized void removeProperty(Object property) {
+		Integer propertyId = ids.get(property);
+		if (propertyId != null) {
+			Table t = table;
+			for (int i = 0; i < t.keys.length; i++) {
+				if (t.keys[i] != 0 && (int) (t.keys[i] >>> 32) == propertyId) {
+					VALUES.setRelease(t.values, i, null);
+				}
+			}
 		}
 	}
 
@@ -73,7 +167,7 @@ class CachedEntity {
 	 * Removes all property data of the entity.
 	 */
 	public synchronized void clearProperties() {
-		values.clear();
+		table = new Table(4);
 	}
 
 	/**
@@ -86,11 +180,81 @@ class CachedEntity {
 	 * @return returns data for the specified property of the entity denoted by
 	 *         context.
 	 */
-	public synchronized Object get(Object context, Object property) {
-		Data data = values.get(property);
-		if (data != null) {
-			return data.first(context == null ? NULL : context).getValue();
+	public Object get(Object context, Object property) {
+		Integer contextId = ids.get(context == null ? NULL : context);
+		Integer propertyId = ids.get(property);
+		if (contextId == null || propertyId == null) {
+			return null;
+		}
+		long key = key(contextId, propertyId);
+		Table t = table;
+		int mask = t.keys.length - 1;
+		for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+			long k = (long) KEYS.getAcquire(t.keys, i);
+			if (k == key) {
+				return VALUES.getAcquire(t.values, i);
+			} else if (k == 0) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Estimates the size of this entity with its table and values in bytes.
+	 */
+	int weigh() {
+		Table t = table;
+		int weight = 64 + 12 * t.keys.length;
+		for (int i = 0; i < t.values.length; i++) {
+			Object value = VALUES.getAcquire(t.values, i);
+			if (value != null) {
+				weight += SailCaches.weigh(value);
+			}
+		}
+		return weight;
+	}
+
+	private static long key(int contextId, int propertyId) {
+		return ((long) propertyId << 32) | contextId;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int indexOf(Table t, long key) {
+		int mask = t.keys.length - 1;
+		int i = hash(key) & mask;
+		while (t.keys[i] != 0 && t.keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private Table rehash(Table t) {
+		int live = 0;
+		for (Object value : t.values) {
+			if (value != null) {
+				live++;
+			}
+		}
+		// removed entries are dropped and the table is at most half full afterwards
+		int capacity = 4;
+		while ((live + 1) * 2 > capacity) {
+			capacity *= 2;
+		}
+		Table newTable = new Table(capacity);
+		for (int i = 0; i < t.keys.length; i++) {
+			if (t.values[i] != null) {
+				int j = indexOf(newTable, t.keys[i]);
+				newTable.keys[j] = t.keys[i];
+				newTable.values[j] = t.values[i];
+				newTable.used++;
+			}
 		}
-		return null;
+		// the new table is safely published by the volatile write
+		table = newTable;
+		return newTable;
 	}
-}
\ No newline at end of file
+}
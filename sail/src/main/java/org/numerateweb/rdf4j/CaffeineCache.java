@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.cache.CacheStats;
+import org.numerateweb.math.reasoner.CacheResult;
+
+class CaffeineCache<K, T> extends InstrumentedCache<K, T> {
+	private final static Object NULL = new Object();
+
+	private final Cache<Object, Object> cache;
+
+	public CaffeineCache(Cache<Object, Object> cache) {
+		this.cache = cache;
+	}
+
+	@Override
+	public void put(K key, T value) {
+		cache.put(key, value == null ? NULL : value);
+	}
+
+	@Override
+	protected CacheResult<T> getInternal(K key) {
+		Object value = cache.getIfPresent(key);
+		return value == null ? null : new CacheResult<T>(getRealValue(value));
+	}
+
+	@SuppressWarnings("unchecked")
+	protected T getRealValue(Object value) {
+		return value == NULL ? null : (T) value;
+	}
+
+	@Override
+	public void remove(K key) {
+		cache.invalidate(key);
+	}
+
+	@Override
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	@Override
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	@Override
+	public CacheStats stats() {
+		com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+		return new CacheStats(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(),
+				stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount());
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.cache.CacheBuilderSpec;
+
+import java.util.StringJoiner;
+
+/**
+ * Provides caches that are based on Caffeine and its W-TinyLFU eviction policy.
+ * <p>
+ * Caffeine is an optional dependency. This provider is skipped by {@link CacheProvider#forName(String)} if
+ * Caffeine is not available.
+ */
+public class CaffeineCacheProvider implements CacheProvider {
+	public static final String NAME = "caffeine";
+
+	public CaffeineCacheProvider() {
+		// fails with a NoClassDefFoundError if Caffeine is not available
+		Caffeine.class.getName();
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public <K, V> InstrumentedCache<K, V> createCache(String spec) {
+		Caffeine<Object, Object> builder = Caffeine.from(toCaffeineSpec(spec)).recordStats();
+		if (spec.contains("maximumWeight")) {
+			builder.weigher((key, value) -> SailCaches.weigh(key) + SailCaches.weigh(value));
+		}
+		return new CaffeineCache<>(builder.build());
+	}
+
+	/**
+	 * Translates a specification in the format of Guava's <code>CacheBuilderSpec</code> to the format of
+	 * Caffeine's <code>CaffeineSpec</code>. Caffeine does not use segments and statistics are always
+	 * recorded, hence <code>concurrencyLevel</code> and <code>recordStats</code> are dropped.
+	 *
+	 * @param spec the Guava specification
+	 * @return the Caffeine specification
+	 * @throws IllegalArgumentException if the specification is invalid or uses an unsupported option
+	 */
+	static String toCaffeineSpec(String spec) {
+		CacheBuilderSpec.parse(spec);
+		StringJoiner caffeineSpec = new StringJoiner(",");
+		for (String option : spec.split(",")) {
+			option = option.trim();
+			if (option.isEmpty()) {
+				continue;
+			}
+			String key = option.split("=", 2)[0].trim();
+			switch (key) {
+				case "concurrencyLevel":
+				case "recordStats":
+					break;
+				case "initialCapacity":
+				case "maximumSize":
+				case "maximumWeight":
+				case "weakKeys":
+				case "weakValues":
+				case "softValues":
+				case "expireAfterAccess":
+				case "expireAfterWrite":
+					caffeineSpec.add(option);
+					break;
+				default:
+					throw new IllegalArgumentException("Unsupported cache option for Caffeine: " + key);
+			}
+		}
+		return caffeineSpec.toString();
+	}
+}
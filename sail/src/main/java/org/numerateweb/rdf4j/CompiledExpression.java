@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.komma.core.IReference;
+import org.numerateweb.math.model.OMObject;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * An OpenMath expression that has been compiled to a tree of method handles which computes its value
+ * with primitive doubles.
+ * <p>
+ * Only numeric literals, property references of the current subject and the arithmetic symbols of the
+ * <code>arith1</code> and <code>nums1</code> content dictionaries are supported. For all other
+ * expressions {@link #compile(OMObject)} returns <code>null</code> and the expression has to be
+ * interpreted. Property values that can not be represented exactly as doubles are reported with an
+ * {@link UnsupportedValueException} which also requires to fall back to the interpreter.
+ */
+class CompiledExpression {
+	/**
+	 * Resolves the numeric value of a property for a subject.
+	 */
+	@FunctionalInterface
+	interface ValueResolver {
+		double value(Object subject, IReference property);
+	}
+
+	/**
+	 * Signals that an expression can not be evaluated with primitive doubles.
+	 */
+	static class UnsupportedValueException extends RuntimeException {
+		static final UnsupportedValueException INSTANCE = new UnsupportedValueException();
+
+		private UnsupportedValueException() {
+			super("Value is not supported by compiled expressions", null, false, false);
+		}
+	}
+
+	private static final MethodType TYPE = MethodType.methodType(double.class, Object.class,
+			ValueResolver.class);
+	private static final MethodType UNARY = MethodType.methodType(double.class, double.class);
+	private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+
+	private static final MethodHandle VALUE;
+	private static final Map<String, MethodHandle> OPERATORS;
+	private static final long MAX_EXACT_LONG = 1L << 53;
+	private static final Map<String, Double> CONSTANTS = Map.of("nums1#pi", Math.PI, "nums1#e", Math.E);
+
+	static {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			VALUE = lookup.findStatic(CompiledExpression.class, "value", MethodType.methodType(double.class,
+					Object.class, ValueResolver.class, IReference.class));
+			OPERATORS = Map.of(
+					"arith1#plus", lookup.findStatic(CompiledExpression.class, "plus", BINARY),
+					"arith1#minus", lookup.findStatic(CompiledExpression.class, "minus", BINARY),
+					"arith1#times", lookup.findStatic(CompiledExpression.class, "times", BINARY),
+					"arith1#divide", lookup.findStatic(CompiledExpression.class, "divide", BINARY),
+					"arith1#power", lookup.findStatic(Math.class, "pow", BINARY),
+					"arith1#root", lookup.findStatic(CompiledExpression.class, "root", BINARY),
+					"arith1#unary_minus", lookup.findStatic(CompiledExpression.class, "negate", UNARY),
+					"arith1#abs", lookup.findStatic(Math.class, "abs", UNARY));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final MethodHandle handle;
+	private final boolean floatingPoint;
+
+	private CompiledExpression(MethodHandle handle, boolean floatingPoint) {
+		this.handle = handle;
+		this.floatingPoint = floatingPoint;
+	}
+
+	/**
+	 * Compiles the given expression.
+	 *
+	 * @param expression the OpenMath expression
+	 * @return the compiled expression or <code>null</code> if the expression contains unsupported elements
+	 */
+	static CompiledExpression compile(OMObject expression) {
+		if (expression == null) {
+			return null;
+		}
+		Compiler compiler = new Compiler();
+		MethodHandle handle = compiler.compile(expression);
+		// expressions with only integer literals are left to the interpreter to retain exact results
+		return handle != null && (compiler.floatingPoint || compiler.properties) ?
+				new CompiledExpression(handle, compiler.floatingPoint) : null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the expression contains floating point literals or constants. Otherwise
+	 * the interpreter computes an exact result if all referenced values are integers.
+	 */
+	boolean isFloatingPoint() {
+		return floatingPoint;
+	}
+
+	/**
+	 * Converts a property value to a double.
+	 *
+	 * @param value the property value
+	 * @return the value as double
+	 * @throws UnsupportedValueException if the value is not a number that can be represented exactly
+	 *                                   as a double
+	 */
+	static double toDouble(Object value) {
+		if (value instanceof Double || value instanceof Float) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+				|| value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+			long longValue = ((Number) value).longValue();
+			if (Math.abs(longValue) <= MAX_EXACT_LONG) {
+				return longValue;
+			}
+		}
+		// e.g. decimals whose arithmetic is exact in the interpreter
+		throw UnsupportedValueException.INSTANCE;
+	}
+
+	/**
+	 * Computes the value of the expression for the given subject.
+	 *
+	 * @param subject  the subject whose property values are referenced by the expression
+	 * @param resolver resolves the values of referenced properties
+	 * @return the value of the expression
+	 * @throws UnsupportedValueException if a referenced value or the result is not a finite floating
+	 *                                   point number
+	 */
+	double evaluate(Object subject, ValueResolver resolver) {
+		double value;
+		try {
+			value = (double) handle.invokeExact(subject, resolver);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			// let the interpreter report errors like a division by zero
+			throw UnsupportedValueException.INSTANCE;
+		}
+		return value;
+	}
+
+	private static class Compiler {
+		boolean floatingPoint;
+		boolean properties;
+
+		MethodHandle compile(OMObject expr) {
+			Object[] args = expr.getArgs();
+			if (args == null || expr.getType() == null) {
+				return null;
+			}
+			switch (expr.getType()) {
+				case OMOBJ:
+					return args.length == 1 && args[0] instanceof OMObject ? compile((OMObject) args[0]) : null;
+				case OMI:
+					return args.length == 1 && args[0] instanceof Number ?
+							constant(((Number) args[0]).doubleValue()) : null;
+				case OMF:
+					floatingPoint = true;
+					return args.length == 1 && args[0] instanceof Number ?
+							constant(((Number) args[0]).doubleValue()) : null;
+				case OMS:
+					Double value = CONSTANTS.get(symbol(expr));
+					if (value != null) {
+						floatingPoint = true;
+						return constant(value);
+					}
+					return null;
+				case OMR:
+					if (args.length == 1 && args[0] instanceof IReference) {
+						properties = true;
+						return MethodHandles.insertArguments(VALUE, 2, args[0]);
+					}
+					return null;
+				case OMA:
+					return compileApplication(args);
+				default:
+					return null;
+			}
+		}
+
+		MethodHandle compileApplication(Object[] args) {
+			if (args.length < 2 || !(args[0] instanceof OMObject)
+					|| ((OMObject) args[0]).getType() != OMObject.Type.OMS) {
+				return null;
+			}
+			MethodHandle operator = OPERATORS.get(symbol((OMObject) args[0]));
+			if (operator == null) {
+				return null;
+			}
+			MethodHandle[] operands = new MethodHandle[args.length - 1];
+			for (int i = 0; i < operands.length; i++) {
+				if (!(args[i + 1] instanceof OMObject) || (operands[i] = compile((OMObject) args[i + 1])) == null) {
+					return null;
+				}
+			}
+			int arity = operator.type().parameterCount();
+			if (arity == 1) {
+				return operands.length == 1 ? MethodHandles.filterReturnValue(operands[0], operator) : null;
+			}
+			if (operands.length < 2 || operands.length > 2 && !isAssociative((OMObject) args[0])) {
+				return null;
+			}
+			// n-ary sums and products are folded from left to right
+			MethodHandle result = operands[0];
+			for (int i = 1; i < operands.length; i++) {
+				MethodHandle combined = MethodHandles.collectArguments(operator, 0, result);
+				combined = MethodHandles.collectArguments(combined, 2, operands[i]);
+				result = MethodHandles.permuteArguments(combined, TYPE, 0, 1, 0, 1);
+			}
+			return result;
+		}
+
+		boolean isAssociative(OMObject symbol) {
+			String name = symbol(symbol);
+			return "arith1#plus".equals(name) || "arith1#times".equals(name);
+		}
+
+		MethodHandle constant(double value) {
+			return MethodHandles.dropArguments(MethodHandles.constant(double.class, value), 0,
+					TYPE.parameterList());
+		}
+
+		/**
+		 * Returns the symbol as <code>cd#name</code> for symbols like
+		 * <code>http://www.openmath.org/cd/arith1#plus</code>.
+		 */
+		String symbol(OMObject oms) {
+			Object[] args = oms.getArgs();
+			if (args == null || args.length == 0) {
+				return null;
+			}
+			String uri = String.valueOf(args[0]);
+			int hash = uri.lastIndexOf('#');
+			if (hash < 0) {
+				return null;
+			}
+			int slash = uri.lastIndexOf('/', hash);
+			return uri.substring(slash + 1);
+		}
+	}
+
+	private static double value(Object subject, ValueResolver resolver, IReference property) {
+		return resolver.value(subject, property);
+	}
+
+	private static double plus(double a, double b) {
+		return a + b;
+	}
+
+	private static double minus(double a, double b) {
+		return a - b;
+	}
+
+	private static double times(double a, double b) {
+		return a * b;
+	}
+
+	private static double divide(double a, double b) {
+		return a / b;
+	}
+
+	private static double root(double a, double n) {
+		return n == 2 ? Math.sqrt(a) : Math.pow(a, 1 / n);
+	}
+
+	private static double negate(double a) {
+		return -a;
+	}
+}
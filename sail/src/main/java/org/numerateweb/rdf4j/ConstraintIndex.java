@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.eclipse.rdf4j.query.impl.SimpleDataset;
+import org.eclipse.rdf4j.query.parser.ParsedQuery;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.numerateweb.math.rdf.rules.NWRULES;
+import org.numerateweb.math.util.SparqlUtils;
+
+import java.util.*;
+
+/**
+ * In-memory index of all constraint declarations and of the asserted class hierarchy.
+ * <p>
+ * The index is loaded with two scans of the store when it is used for the first time. Afterwards, only the
+ * declarations and super classes of classes that are affected by schema changes are reloaded.
+ */
+class ConstraintIndex {
+	private static final String DECLARATIONS_QUERY = Rdf4jModelAccess.PREFIX
+			+ SparqlUtils.prefix("mathrl", NWRULES.NAMESPACE)
+			+ "SELECT distinct ?c ?constraint ?property { " //
+			+ "{ graph ?g { ?c mathrl:constraint ?constraint } } union { ?c mathrl:constraint ?constraint filter (!bound(?g)) } "
+			+ "?constraint mathrl:onProperty ?property " //
+			+ "}";
+	private static final ParsedQuery declarationsQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL,
+			DECLARATIONS_QUERY, null);
+	private static final Dataset ALL_GRAPHS = new SimpleDataset();
+
+	/**
+	 * A constraint that is directly attached to a class.
+	 */
+	static class Declaration {
+		final Resource constraint;
+		final IRI property;
+		final Resource graph;
+
+		Declaration(Resource constraint, IRI property, Resource graph) {
+			this.constraint = constraint;
+			this.property = property;
+			this.graph = graph;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Declaration)) {
+				return false;
+			}
+			Declaration that = (Declaration) o;
+			return constraint.equals(that.constraint) && property.equals(that.property)
+					&& Objects.equals(graph, that.graph);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(constraint, property, graph);
+		}
+	}
+
+	private final Map<Resource, List<Declaration>> declarations = new HashMap<>();
+	private final Map<Resource, Set<Resource>> superClasses = new HashMap<>();
+	private final Set<Resource> restrictions = new HashSet<>();
+	private boolean loaded = false;
+
+	/**
+	 * Loads the index if this has not been done yet.
+	 */
+	synchronized void ensureLoaded(SailConnection connection) {
+		if (loaded) {
+			return;
+		}
+		declarations.clear();
+		superClasses.clear();
+		restrictions.clear();
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection
+				.evaluate(declarationsQuery.getTupleExpr(), ALL_GRAPHS, EmptyBindingSet.getInstance(), false)) {
+			while (bindingsIter.hasNext()) {
+				addDeclaration(bindingsIter.next(), null);
+			}
+		}
+		try (CloseableIteration<? extends Statement, SailException> stmts = connection
+				.getStatements(null, RDFS.SUBCLASSOF, null, false)) {
+			while (stmts.hasNext()) {
+				Statement stmt = stmts.next();
+				if (stmt.getObject() instanceof Resource) {
+					superClasses.computeIfAbsent(stmt.getSubject(), c -> new HashSet<>())
+							.add((Resource) stmt.getObject());
+				}
+			}
+		}
+		try (CloseableIteration<? extends Statement, SailException> stmts = connection
+				.getStatements(null, RDF.TYPE, OWL.RESTRICTION, false)) {
+			while (stmts.hasNext()) {
+				restrictions.add(stmts.next().getSubject());
+			}
+		}
+		loaded = true;
+	}
+
+	/**
+	 * Reloads the declared constraints and the super classes of the given class.
+	 *
+	 * @return the declarations of the class before it was reloaded
+	 */
+	synchronized List<Declaration> reload(SailConnection connection, Resource clazz) {
+		List<Declaration> oldDeclarations = declarations.remove(clazz);
+		if (!loaded) {
+			return oldDeclarations == null ? Collections.emptyList() : oldDeclarations;
+		}
+		BindingSet bindingSet = new ListBindingSet(List.of("c"), List.of(clazz));
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection
+				.evaluate(declarationsQuery.getTupleExpr(), ALL_GRAPHS, bindingSet, false)) {
+			while (bindingsIter.hasNext()) {
+				addDeclaration(bindingsIter.next(), clazz);
+			}
+		}
+		superClasses.remove(clazz);
+		try (CloseableIteration<? extends Statement, SailException> stmts = connection
+				.getStatements(clazz, RDFS.SUBCLASSOF, null, false)) {
+			while (stmts.hasNext()) {
+				Statement stmt = stmts.next();
+				if (stmt.getObject() instanceof Resource) {
+					Resource superClass = (Resource) stmt.getObject();
+					superClasses.computeIfAbsent(clazz, c -> new HashSet<>()).add(superClass);
+					if (connection.hasStatement(superClass, RDF.TYPE, OWL.RESTRICTION, false)) {
+						restrictions.add(superClass);
+					}
+				}
+			}
+		}
+		return oldDeclarations == null ? Collections.emptyList() : oldDeclarations;
+	}
+
+	private void addDeclaration(BindingSet bindings, Resource clazz) {
+		Resource c = clazz != null ? clazz : (Resource) bindings.getValue("c");
+		Resource constraint = (Resource) bindings.getValue("constraint");
+		IRI property = (IRI) bindings.getValue("property");
+		Resource graph = (Resource) bindings.getValue("g");
+		declarations.computeIfAbsent(c, k -> new ArrayList<>()).add(new Declaration(constraint, property, graph));
+	}
+
+	/**
+	 * Returns the constraints that are directly attached to the given class.
+	 */
+	synchronized List<Declaration> getDeclarations(Resource clazz) {
+		List<Declaration> classDeclarations = declarations.get(clazz);
+		return classDeclarations == null ? Collections.emptyList() : new ArrayList<>(classDeclarations);
+	}
+
+	/**
+	 * Returns the given class and all of its direct and indirect sub classes.
+	 */
+	synchronized Set<Resource> getSubClasses(Resource clazz) {
+		Map<Resource, List<Resource>> subClasses = new HashMap<>();
+		superClasses.forEach((subClass, classSuperClasses) -> {
+			for (Resource superClass : classSuperClasses) {
+				subClasses.computeIfAbsent(superClass, c -> new ArrayList<>()).add(subClass);
+			}
+		});
+		Set<Resource> result = new LinkedHashSet<>();
+		Deque<Resource> queue = new ArrayDeque<>();
+		queue.add(clazz);
+		while (!queue.isEmpty()) {
+			Resource c = queue.remove();
+			if (result.add(c)) {
+				queue.addAll(subClasses.getOrDefault(c, Collections.emptyList()));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the direct super classes of the given class.
+	 * <p>
+	 * A super class is direct if it is not a restriction and if it is not a super class of another
+	 * asserted super class.
+	 */
+	synchronized List<Resource> getDirectSuperClasses(Resource clazz) {
+		Set<Resource> classSuperClasses = superClasses.getOrDefault(clazz, Collections.emptySet());
+		List<Resource> direct = new ArrayList<>();
+		for (Resource superClass : classSuperClasses) {
+			if (superClass.equals(clazz) || restrictions.contains(superClass)) {
+				continue;
+			}
+			boolean indirect = false;
+			for (Resource other : classSuperClasses) {
+				if (!other.equals(clazz) && !other.equals(superClass) &&
+						superClasses.getOrDefault(other, Collections.emptySet()).contains(superClass)) {
+					indirect = true;
+					break;
+				}
+			}
+			if (!indirect) {
+				direct.add(superClass);
+			}
+		}
+		return direct;
+	}
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.commons.util.Pair;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URIs;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Graph of the dependencies between (resource, property) nodes that are recorded while evaluating constraints.
+ * <p>
+ * An edge <code>from -&gt; to</code> states that the value of <code>from</code> has been computed by reading
+ * the value of <code>to</code>.
+ * <p>
+ * Resources, properties and nodes are mapped to int ids and the edges are stored as sets of node ids.
+ * The graph can be written to and read from a compact binary file.
+ */
+class DependencyGraph {
+	static private final Logger logger = LoggerFactory.getLogger(DependencyGraph.class);
+
+	private static final int MAGIC = 0x4E574447; // NWDG
+	private static final int VERSION = 2;
+
+	private final Map<Object, Integer> resourceIds = new HashMap<>();
+	private final List<Object> resources = new ArrayList<>();
+	private final Map<IReference, Integer> propertyIds = new HashMap<>();
+	private final List<IReference> properties = new ArrayList<>();
+	private final Map<Long, Integer> nodeIds = new HashMap<>();
+
+	private int nodeCount = 0;
+	private int[] nodeResources = new int[16];
+	private int[] nodeProperties = new int[16];
+	private IntSet[] dependencies = new IntSet[16];
+	private IntSet[] dependents = new IntSet[16];
+	private IntSet[] resourceNodes = new IntSet[16];
+	/**
+	 * Ids of removed nodes and resources that are reused by new ones.
+	 */
+	private final Deque<Integer> freeNodes = new ArrayDeque<>();
+	private final Deque<Integer> freeResources = new ArrayDeque<>();
+
+	/**
+	 * Records that the value of <code>from</code> depends on the value of <code>to</code>.
+	 */
+	public synchronized void add(Pair<Object, IReference> from, Pair<Object, IReference> to) {
+		addEdge(nodeId(from.getFirst(), from.getSecond()), nodeId(to.getFirst(), to.getSecond()));
+	}
+
+	private void addEdge(int from, int to) {
+		if (dependencies[from] == null) {
+			dependencies[from] = new IntSet();
+		}
+		if (dependencies[from].add(to)) {
+			if (dependents[to] == null) {
+				dependents[to] = new IntSet();
+			}
+			dependents[to].add(from);
+		}
+	}
+
+	/**
+	 * Removes all outgoing edges of the given node, e.g. before its value is computed again.
+	 */
+	public synchronized void removeDependencies(Pair<Object, IReference> node) {
+		int id = findNode(node);
+		if (id >= 0) {
+			removeEdges(id);
+		}
+	}
+
+	private void removeEdges(int id) {
+		if (dependencies[id] == null) {
+			return;
+		}
+		IntSet nodeDependencies = dependencies[id];
+		dependencies[id] = null;
+		nodeDependencies.forEach(dependency -> {
+			IntSet dependencyDependents = dependents[dependency];
+			if (dependencyDependents != null) {
+				dependencyDependents.remove(id);
+				if (dependencyDependents.size == 0) {
+					dependents[dependency] = null;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Removes the nodes of a resource that has been deleted from the store.
+	 * <p>
+	 * The dependencies of the nodes are dropped. Nodes that nodes of other resources still depend on are
+	 * kept so that their dependents are updated if the resource is added again.
+	 *
+	 * @return the number of removed nodes
+	 */
+	public synchronized int removeResource(Object resource) {
+		Integer resourceId = resourceIds.get(resource);
+		if (resourceId == null || resourceNodes[resourceId] == null) {
+			return 0;
+		}
+		IntSet nodes = resourceNodes[resourceId];
+		int[] ids = nodes.toArray();
+		for (int id : ids) {
+			removeEdges(id);
+		}
+		int removed = 0;
+		for (int id : ids) {
+			if (dependents[id] != null) {
+				continue;
+			}
+			nodes.remove(id);
+			nodeIds.remove(((long) resourceId << 32) | nodeProperties[id]);
+			nodeResources[id] = IntSet.FREE;
+			freeNodes.add(id);
+			removed++;
+		}
+		if (nodes.size == 0) {
+			resourceNodes[resourceId] = null;
+			resourceIds.remove(resource);
+			resources.set(resourceId, null);
+			freeResources.add(resourceId);
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the nodes whose values have been read to compute the given node.
+	 */
+	public synchronized Set<Pair<Object, IReference>> getDependencies(Pair<Object, IReference> node) {
+		int id = findNode(node);
+		return id < 0 ? Collections.emptySet() : toNodes(dependencies[id]);
+	}
+
+	/**
+	 * Returns the nodes that directly depend on the given node.
+	 */
+	public synchronized Set<Pair<Object, IReference>> getDependents(Pair<Object, IReference> node) {
+		int id = findNode(node);
+		return id < 0 ? Collections.emptySet() : toNodes(dependents[id]);
+	}
+
+	/**
+	 * Returns the properties of all known nodes for the given resource.
+	 */
+	public synchronized Set<IReference> getProperties(Object resource) {
+		Integer resourceId = resourceIds.get(resource);
+		if (resourceId == null || resourceNodes[resourceId] == null) {
+			return Collections.emptySet();
+		}
+		Set<IReference> resourceProperties = new HashSet<>();
+		resourceNodes[resourceId].forEach(node -> resourceProperties.add(properties.get(nodeProperties[node])));
+		return resourceProperties;
+	}
+
+	/**
+	 * Calls the given consumer with <code>(from, to)</code> for each pair of resources where a property of
+	 * <code>from</code> depends on a property of <code>to</code>.
+	 */
+	public synchronized void forEachResourceDependency(BiConsumer<Object, Object> consumer) {
+		Set<Long> seen = new HashSet<>();
+		for (int from = 0; from < nodeCount; from++) {
+			if (dependencies[from] == null) {
+				continue;
+			}
+			int fromResource = nodeResources[from];
+			dependencies[from].forEach(to -> {
+				int toResource = nodeResources[to];
+				if (seen.add(((long) fromResource << 32) | toResource)) {
+					consumer.accept(resources.get(fromResource), resources.get(toResource));
+				}
+			});
+		}
+	}
+
+	public synchronized void clear() {
+		resourceIds.clear();
+		resources.clear();
+		propertyIds.clear();
+		properties.clear();
+		nodeIds.clear();
+		freeNodes.clear();
+		freeResources.clear();
+		nodeCount = 0;
+		Arrays.fill(dependencies, null);
+		Arrays.fill(dependents, null);
+		Arrays.fill(resourceNodes, null);
+	}
+
+	/**
+	 * Updates the changed nodes and propagates the changes to their transitive dependents.
+	 * <p>
+	 * The nodes are visited in topological order and a dependent is only updated if one of the nodes it
+	 * depends on has changed. A node whose inputs change after it has been updated, e.g. due to edges that
+	 * were recorded while updating other nodes, is updated again in a further round. Nodes on cycles are
+	 * reported and updated at most once per round.
+	 *
+	 * @param changed the nodes whose values have changed
+	 * @param update  updates a node and returns <code>true</code> if its value has changed
+	 * @return the number of updated nodes
+	 */
+	public int propagate(Set<Pair<Object, IReference>> changed, Predicate<Pair<Object, IReference>> update) {
+		int updated = 0;
+		Set<Pair<Object, IReference>> dirty = new HashSet<>(changed);
+		Set<Pair<Object, IReference>> rescheduled = new HashSet<>();
+		while (!dirty.isEmpty()) {
+			Set<Pair<Object, IReference>> cyclic = new HashSet<>();
+			List<Pair<Object, IReference>> order = topologicalOrder(getTransitiveDependents(dirty), cyclic);
+			Map<Pair<Object, IReference>, Integer> positions = new HashMap<>(order.size());
+			for (int i = 0; i < order.size(); i++) {
+				positions.put(order.get(i), i);
+			}
+			Set<Pair<Object, IReference>> next = new HashSet<>();
+			for (int i = 0; i < order.size(); i++) {
+				Pair<Object, IReference> node = order.get(i);
+				if (!dirty.remove(node)) {
+					continue;
+				}
+				updated++;
+				if (!update.test(node)) {
+					// early cutoff, the dependents are not affected by this node
+					continue;
+				}
+				for (Pair<Object, IReference> dependent : getDependents(node)) {
+					Integer position = positions.get(dependent);
+					if (position != null && position > i) {
+						dirty.add(dependent);
+					} else if (!cyclic.contains(dependent) && rescheduled.add(dependent)) {
+						// the dependent has already been updated with an outdated input
+						next.add(dependent);
+					}
+				}
+			}
+			dirty = next;
+		}
+		return updated;
+	}
+
+	/**
+	 * Returns the given nodes together with all of their transitive dependents.
+	 */
+	public synchronized Set<Pair<Object, IReference>> getTransitiveDependents(Set<Pair<Object, IReference>> nodes) {
+		Set<Pair<Object, IReference>> result = new HashSet<>(nodes);
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (Pair<Object, IReference> node : nodes) {
+			int id = findNode(node);
+			if (id >= 0) {
+				queue.add(id);
+			}
+		}
+		Set<Integer> seen = new HashSet<>(queue);
+		while (!queue.isEmpty()) {
+			int id = queue.remove();
+			if (dependents[id] != null) {
+				dependents[id].forEach(dependent -> {
+					if (seen.add(dependent)) {
+						queue.add(dependent);
+						result.add(new Pair<>(resources.get(nodeResources[dependent]),
+								properties.get(nodeProperties[dependent])));
+					}
+				});
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the given nodes such that each node comes after all nodes of this set it depends on.
+	 * <p>
+	 * Nodes that are part of a cycle can not be ordered. Each detected cycle is reported and its nodes
+	 * are appended at the end of the returned list.
+	 *
+	 * @param nodes the nodes that should be sorted
+	 * @return the sorted nodes
+	 */
+	public List<Pair<Object, IReference>> topologicalOrder(Set<Pair<Object, IReference>> nodes) {
+		return topologicalOrder(nodes, new HashSet<>());
+	}
+
+	/**
+	 * Sorts the given nodes like {@link #topologicalOrder(Set)} and adds the nodes that are part of or depend
+	 * on a cycle to <code>cyclic</code>.
+	 */
+	public synchronized List<Pair<Object, IReference>> topologicalOrder(Set<Pair<Object, IReference>> nodes,
+	                                                                    Set<Pair<Object, IReference>> cyclic) {
+		List<Pair<Object, IReference>> order = new ArrayList<>(nodes.size());
+		// nodes without any recorded edges can be evaluated first
+		Map<Integer, Pair<Object, IReference>> known = new LinkedHashMap<>();
+		for (Pair<Object, IReference> node : nodes) {
+			int id = findNode(node);
+			if (id < 0) {
+				order.add(node);
+			} else {
+				known.put(id, node);
+			}
+		}
+
+		Map<Integer, Integer> inDegrees = new HashMap<>(known.size());
+		for (int id : known.keySet()) {
+			int[] inDegree = {0};
+			if (dependencies[id] != null) {
+				dependencies[id].forEach(dependency -> {
+					if (known.containsKey(dependency)) {
+						inDegree[0]++;
+					}
+				});
+			}
+			inDegrees.put(id, inDegree[0]);
+		}
+
+		Queue<Integer> queue = new ArrayDeque<>();
+		inDegrees.forEach((id, inDegree) -> {
+			if (inDegree == 0) {
+				queue.add(id);
+			}
+		});
+		while (!queue.isEmpty()) {
+			int id = queue.remove();
+			order.add(known.get(id));
+			if (dependents[id] != null) {
+				dependents[id].forEach(dependent -> {
+					Integer inDegree = inDegrees.get(dependent);
+					if (inDegree != null) {
+						inDegrees.put(dependent, inDegree - 1);
+						if (inDegree == 1) {
+							queue.add(dependent);
+						}
+					}
+				});
+			}
+		}
+
+		if (order.size() < nodes.size()) {
+			// the remaining nodes are part of or depend on cycles
+			Set<Integer> remaining = new LinkedHashSet<>();
+			inDegrees.forEach((id, inDegree) -> {
+				if (inDegree > 0) {
+					remaining.add(id);
+				}
+			});
+			reportCycles(remaining);
+			for (int id : remaining) {
+				order.add(known.get(id));
+				cyclic.add(known.get(id));
+			}
+		}
+		return order;
+	}
+
+	private void reportCycles(Set<Integer> remaining) {
+		Set<Integer> visited = new HashSet<>();
+		for (int start : remaining) {
+			if (visited.contains(start)) {
+				continue;
+			}
+			// follow the dependencies within the remaining nodes until a node is seen twice
+			List<Integer> path = new ArrayList<>();
+			Map<Integer, Integer> pathIndex = new HashMap<>();
+			Integer node = start;
+			while (node != null && !visited.contains(node)) {
+				visited.add(node);
+				pathIndex.put(node, path.size());
+				path.add(node);
+				IntSet nodeDependencies = dependencies[node];
+				node = null;
+				if (nodeDependencies != null) {
+					for (int dependency : nodeDependencies.toArray()) {
+						if (remaining.contains(dependency)) {
+							node = dependency;
+							break;
+						}
+					}
+				}
+			}
+			if (node != null && pathIndex.containsKey(node)) {
+				List<Integer> cycle = new ArrayList<>(path.subList(pathIndex.get(node), path.size()));
+				cycle.add(node);
+				logger.warn("Cyclic dependency detected: {}", cycle.stream()
+						.map(n -> resources.get(nodeResources[n]) + " " + properties.get(nodeProperties[n]))
+						.collect(Collectors.joining(" -> ")));
+			}
+		}
+	}
+
+	/**
+	 * Writes the graph to the given file. The ids of removed nodes and resources are not written.
+	 * <p>
+	 * Resources must either be IRIs or blank nodes.
+	 *
+	 * @param file             the target file, which is replaced atomically
+	 * @param storeFingerprint identifies the state of the store the graph has been computed for
+	 * @throws IOException if the file could not be written
+	 */
+	public synchronized void write(File file, long storeFingerprint) throws IOException {
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(storeFingerprint);
+			// the ids are compacted by mapping them to their positions among the used ids
+			int[] resourceMap = new int[resources.size()];
+			int resourceCount = 0;
+			for (int i = 0; i < resources.size(); i++) {
+				resourceMap[i] = resources.get(i) == null ? IntSet.FREE : resourceCount++;
+			}
+			int[] nodeMap = new int[nodeCount];
+			int count = 0;
+			for (int i = 0; i < nodeCount; i++) {
+				nodeMap[i] = nodeResources[i] == IntSet.FREE ? IntSet.FREE : count++;
+			}
+			out.writeInt(resourceCount);
+			for (Object resource : resources) {
+				if (resource == null) {
+					continue;
+				}
+				if (resource instanceof BNode) {
+					out.writeBoolean(true);
+					out.writeUTF(((BNode) resource).getID());
+				} else {
+					out.writeBoolean(false);
+					out.writeUTF(((Resource) resource).stringValue());
+				}
+			}
+			out.writeInt(properties.size());
+			for (IReference property : properties) {
+				out.writeUTF(property.getURI().toString());
+			}
+			out.writeInt(count);
+			for (int i = 0; i < nodeCount; i++) {
+				if (nodeMap[i] != IntSet.FREE) {
+					out.writeInt(resourceMap[nodeResources[i]]);
+					out.writeInt(nodeProperties[i]);
+				}
+			}
+			for (int i = 0; i < nodeCount; i++) {
+				if (nodeMap[i] == IntSet.FREE) {
+					continue;
+				}
+				int[] nodeDependencies = dependencies[i] == null ? new int[0] : dependencies[i].toArray();
+				out.writeInt(nodeDependencies.length);
+				for (int dependency : nodeDependencies) {
+					out.writeInt(nodeMap[dependency]);
+				}
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Replaces the contents of this graph with the contents of the given file.
+	 *
+	 * @param file         the source file
+	 * @param valueFactory factory used to create the resources of the graph
+	 * @return the fingerprint of the store that has been passed to {@link #write(File, long)}
+	 * @throws IOException if the file could not be read or has an invalid format
+	 */
+	public synchronized long read(File file, ValueFactory valueFactory) throws IOException {
+		clear();
+		long storeFingerprint;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unsupported format of dependency index " + file);
+			}
+			storeFingerprint = in.readLong();
+			int resourceCount = in.readInt();
+			for (int i = 0; i < resourceCount; i++) {
+				boolean bnode = in.readBoolean();
+				String value = in.readUTF();
+				resourceId(bnode ? valueFactory.createBNode(value) : valueFactory.createIRI(value));
+			}
+			int propertyCount = in.readInt();
+			for (int i = 0; i < propertyCount; i++) {
+				propertyId(URIs.createURI(in.readUTF()));
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int resource = in.readInt();
+				int property = in.readInt();
+				if (resource >= resources.size() || property >= properties.size()) {
+					throw new IOException("Invalid node in dependency index " + file);
+				}
+				nodeId(resource, property);
+			}
+			for (int from = 0; from < count; from++) {
+				int dependencyCount = in.readInt();
+				for (int i = 0; i < dependencyCount; i++) {
+					int to = in.readInt();
+					if (to >= count) {
+						throw new IOException("Invalid edge in dependency index " + file);
+					}
+					addEdge(from, to);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			clear();
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+		return storeFingerprint;
+	}
+
+	private int resourceId(Object resource) {
+		Integer id = resourceIds.get(resource);
+		if (id == null) {
+			id = freeResources.poll();
+			if (id != null) {
+				resources.set(id, resource);
+			} else {
+				id = resources.size();
+				resources.add(resource);
+				if (id == resourceNodes.length) {
+					resourceNodes = Arrays.copyOf(resourceNodes, id * 2);
+				}
+			}
+			resourceIds.put(resource, id);
+		}
+		return id;
+	}
+
+	private int propertyId(IReference property) {
+		Integer id = propertyIds.get(property);
+		if (id == null) {
+			id = properties.size();
+			properties.add(property);
+			propertyIds.put(property, id);
+		}
+		return id;
+	}
+
+	private int nodeId(Object resource, IReference property) {
+		return nodeId(resourceId(resource), propertyId(property));
+	}
+
+	private int nodeId(int resource, int property) {
+		long key = ((long) resource << 32) | property;
+		Integer id = nodeIds.get(key);
+		if (id == null) {
+			id = freeNodes.poll();
+			if (id == null) {
+				id = nodeCount++;
+			}
+			if (id == nodeResources.length) {
+				int capacity = id * 2;
+				nodeResources = Arrays.copyOf(nodeResources, capacity);
+				nodeProperties = Arrays.copyOf(nodeProperties, capacity);
+				dependencies = Arrays.copyOf(dependencies, capacity);
+				dependents = Arrays.copyOf(dependents, capacity);
+			}
+			nodeResources[id] = resource;
+			nodeProperties[id] = property;
+			nodeIds.put(key, id);
+			if (resourceNodes[resource] == null) {
+				resourceNodes[resource] = new IntSet();
+			}
+			resourceNodes[resource].add(id);
+		}
+		return id;
+	}
+
+	private int findNode(Pair<Object, IReference> node) {
+		Integer resource = resourceIds.get(node.getFirst());
+		Integer property = propertyIds.get(node.getSecond());
+		if (resource == null || property == null) {
+			return -1;
+		}
+		Integer id = nodeIds.get(((long) resource << 32) | property);
+		return id == null ? -1 : id;
+	}
+
+	private Set<Pair<Object, IReference>> toNodes(IntSet ids) {
+		if (ids == null) {
+			return Collections.emptySet();
+		}
+		Set<Pair<Object, IReference>> nodes = new HashSet<>();
+		ids.forEach(id -> nodes.add(new Pair<>(resources.get(nodeResources[id]), properties.get(nodeProperties[id]))));
+		return nodes;
+	}
+
+	/**
+	 * Set of non-negative ints using open addressing with linear probing.
+	 */
+	static class IntSet {
+		static final int FREE = -1;
+
+		int[] table = new int[4];
+		int size = 0;
+
+		IntSet() {
+			Arrays.fill(table, FREE);
+		}
+
+		boolean add(int value) {
+			int i = indexOf(value);
+			if (table[i] == value) {
+				return false;
+			}
+			table[i] = value;
+			if (++size * 2 > table.length) {
+				rehash(table.length * 2);
+			}
+			return true;
+		}
+
+		boolean remove(int value) {
+			int i = indexOf(value);
+			if (table[i] != value) {
+				return false;
+			}
+			table[i] = FREE;
+			size--;
+			// move following entries of the same probe sequence into the free slot
+			int mask = table.length - 1;
+			for (int j = (i + 1) & mask; table[j] != FREE; j = (j + 1) & mask) {
+				int entry = table[j];
+				table[j] = FREE;
+				table[indexOf(entry)] = entry;
+			}
+			return true;
+		}
+
+		boolean contains(int value) {
+			return table[indexOf(value)] == value;
+		}
+
+		void forEach(IntConsumer consumer) {
+			for (int value : table) {
+				if (value != FREE) {
+					consumer.accept(value);
+				}
+			}
+		}
+
+		int[] toArray() {
+			int[] values = new int[size];
+			int i = 0;
+			for (int value : table) {
+				if (value != FREE) {
+					values[i++] = value;
+				}
+			}
+			return values;
+		}
+
+		private int indexOf(int value) {
+			int mask = table.length - 1;
+			int hash = value * 0x9E3779B9;
+			int i = (hash ^ (hash >>> 16)) & mask;
+			while (table[i] != FREE && table[i] != value) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		private void rehash(int capacity) {
+			int[] oldTable = table;
+			table = new int[capacity];
+			Arrays.fill(table, FREE);
+			for (int value : oldTable) {
+				if (value != FREE) {
+					table[indexOf(value)] = value;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.impl.SimpleDataset;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.helpers.SailConnectionWrapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The state of an evaluation that is passed explicitly to {@link Rdf4jModelAccess} and
+ * {@link Rdf4jEvaluator}: the connection that is used for reading and for adding inferred
+ * statements and the graphs that are readable for the current target graph.
+ * <p>
+ * The readable graphs are resolved once when the context is created and the graphs that receive the
+ * inferred statements of resources are remembered for the lifetime of the context.
+ */
+class EvaluationContext {
+	final SailConnection connection;
+	/**
+	 * The readable graphs, starting with the target graph. Empty for the default graph.
+	 */
+	final Resource[] context;
+	final Dataset dataset;
+	/**
+	 * The readable graphs as set for fast lookups.
+	 */
+	final Set<Resource> readable;
+	/**
+	 * The write contexts of resources as determined by {@link Rdf4jModelAccess#writeContext}.
+	 */
+	final Map<Resource, Resource[]> writeContexts;
+
+	EvaluationContext(SailConnection connection, Resource[] context, Dataset dataset) {
+		this(connection, context != null ? context : Rdf4jModelAccess.EMPTY_CTX, dataset, null);
+	}
+
+	private EvaluationContext(SailConnection connection, Resource[] context, Dataset dataset,
+	                          EvaluationContext graphs) {
+		this.connection = connection;
+		this.context = context;
+		this.dataset = dataset;
+		if (graphs != null) {
+			this.readable = graphs.readable;
+			this.writeContexts = graphs.writeContexts;
+		} else {
+			this.readable = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(context)));
+			this.writeContexts = new ConcurrentHashMap<>();
+		}
+	}
+
+	/**
+	 * Creates a context for the default graph.
+	 */
+	EvaluationContext(SailConnection connection) {
+		this(connection, Rdf4jModelAccess.EMPTY_CTX, new SimpleDataset());
+	}
+
+	/**
+	 * Returns a context with the same connection for the given graphs.
+	 */
+	EvaluationContext withGraphs(Resource[] context, Dataset dataset) {
+		return new EvaluationContext(connection, context, dataset);
+	}
+
+	/**
+	 * Returns a context with the same graphs for another connection.
+	 */
+	EvaluationContext withConnection(SailConnection connection) {
+		return new EvaluationContext(connection, context, dataset, this);
+	}
+
+	/**
+	 * Returns the connection of the underlying store that does not track changes.
+	 */
+	SailConnection baseConnection() {
+		SailConnection sailConnection = connection;
+		if (sailConnection instanceof InferredStatementBuffer) {
+			sailConnection = ((InferredStatementBuffer) sailConnection).getWrappedConnection();
+		}
+		return ((SailConnectionWrapper) sailConnection).getWrappedConnection();
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import org.numerateweb.math.model.OMObject;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed expressions of constraints that are kept across restarts of a {@link NumerateWebSail}.
+ * <p>
+ * Expressions are identified by a hash of their contents, e.g. of an expression string together with
+ * its namespace declarations, hence stored entries never become outdated. The expressions are held in
+ * a compact binary encoding and are only decoded when they are requested. Expressions with arguments
+ * that can not be encoded are not stored.
+ */
+class ExpressionStore {
+	private static final int MAGIC = 0x4E574558; // NWEX
+	private static final int VERSION = 1;
+
+	private static final byte NULL = 0, OBJECT = 1, STRING = 2, URI_REF = 3, BIG_INTEGER = 4, INTEGER = 5,
+			LONG = 6, DOUBLE = 7, FLOAT = 8, BIG_DECIMAL = 9, BOOLEAN = 10, BYTES = 11, OBJECT_ARRAY = 12,
+			ARRAY = 13, LIST = 14;
+
+	private final Map<HashCode, byte[]> expressions = new ConcurrentHashMap<>();
+	// the expressions that have been requested or added since the store was read
+	private final Set<HashCode> used = ConcurrentHashMap.newKeySet();
+	private volatile boolean modified = false;
+
+	/**
+	 * Returns the hash of an expression string with the given namespace declarations.
+	 */
+	static HashCode hash(String expression, Map<String, ?> namespaces) {
+		Hasher hasher = Hashing.sha256().newHasher();
+		hasher.putString(expression, StandardCharsets.UTF_8);
+		for (Map.Entry<String, ?> entry : new TreeMap<>(namespaces).entrySet()) {
+			hasher.putByte((byte) 0).putString(entry.getKey(), StandardCharsets.UTF_8)
+					.putByte((byte) 0).putString(String.valueOf(entry.getValue()), StandardCharsets.UTF_8);
+		}
+		return hasher.hash();
+	}
+
+	/**
+	 * Returns the stored expression for the given hash or <code>null</code> if it is unknown.
+	 */
+	OMObject get(HashCode hash) {
+		byte[] bytes = expressions.get(hash);
+		if (bytes == null) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			OMObject expression = (OMObject) readValue(in);
+			used.add(hash);
+			return expression;
+		} catch (IOException | RuntimeException e) {
+			expressions.remove(hash);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores an expression if all of its arguments can be encoded.
+	 */
+	void put(HashCode hash, OMObject expression) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			writeValue(out, expression);
+		} catch (IOException e) {
+			return;
+		}
+		used.add(hash);
+		if (expressions.put(hash, bytes.toByteArray()) == null) {
+			modified = true;
+		}
+	}
+
+	int size() {
+		return expressions.size();
+	}
+
+	/**
+	 * Returns the size of an encoded expression in bytes or {@link SailCaches#DEFAULT_WEIGHT} if it is
+	 * not stored.
+	 */
+	int encodedSize(HashCode hash) {
+		byte[] bytes = expressions.get(hash);
+		return bytes == null ? SailCaches.DEFAULT_WEIGHT : bytes.length;
+	}
+
+	/**
+	 * Removes all expressions that have not been requested or added since the store was read. Nothing is
+	 * removed if no expression has been used at all, e.g. if the inferred statements were up-to-date.
+	 *
+	 * @return the number of removed expressions
+	 */
+	int prune() {
+		if (used.isEmpty()) {
+			return 0;
+		}
+		int size = expressions.size();
+		expressions.keySet().retainAll(used);
+		int removed = size - expressions.size();
+		if (removed > 0) {
+			modified = true;
+		}
+		return removed;
+	}
+
+	/**
+	 * Writes the used expressions to the given file if the stored expressions have changed since they were
+	 * read. Unused expressions are removed by {@link #prune()} before writing.
+	 *
+	 * @param file the target file
+	 * @throws IOException if the file could not be written
+	 */
+	void write(File file) throws IOException {
+		prune();
+		if (!modified && file.exists()) {
+			return;
+		}
+		File tmpFile = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			Map<HashCode, byte[]> entries = new HashMap<>(expressions);
+			out.writeInt(entries.size());
+			for (Map.Entry<HashCode, byte[]> entry : entries.entrySet()) {
+				byte[] hash = entry.getKey().asBytes();
+				out.writeByte(hash.length);
+				out.write(hash);
+				out.writeInt(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+		}
+		Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		modified = false;
+	}
+
+	/**
+	 * Adds the expressions of the given file to this store.
+	 *
+	 * @param file the source file
+	 * @throws IOException if the file could not be read or has an invalid format
+	 */
+	void read(File file) throws IOException {
+		Map<HashCode, byte[]> entries = new HashMap<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unsupported format of expression store " + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				byte[] hash = new byte[in.readUnsignedByte()];
+				in.readFully(hash);
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				entries.put(HashCode.fromBytes(hash), bytes);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException(e);
+		}
+		entries.forEach(expressions::putIfAbsent);
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof OMObject) {
+			OMObject object = (OMObject) value;
+			out.writeByte(OBJECT);
+			out.writeUTF(object.getType().name());
+			Object[] args = object.getArgs();
+			out.writeInt(args == null ? -1 : args.length);
+			if (args != null) {
+				for (Object arg : args) {
+					writeValue(out, arg);
+				}
+			}
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof URI) {
+			out.writeByte(URI_REF);
+			writeString(out, value.toString());
+		} else if (value instanceof BigInteger) {
+			out.writeByte(BIG_INTEGER);
+			writeBytes(out, ((BigInteger) value).toByteArray());
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(BIG_DECIMAL);
+			writeString(out, value.toString());
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof byte[]) {
+			out.writeByte(BYTES);
+			writeBytes(out, (byte[]) value);
+		} else if (value instanceof Object[]) {
+			Object[] array = (Object[]) value;
+			out.writeByte(value instanceof OMObject[] ? OBJECT_ARRAY : ARRAY);
+			out.writeInt(array.length);
+			for (Object element : array) {
+				writeValue(out, element);
+			}
+		} else if (value instanceof List<?>) {
+			List<?> list = (List<?>) value;
+			out.writeByte(LIST);
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case OBJECT:
+				OMObject.Type type = OMObject.Type.valueOf(in.readUTF());
+				int argCount = in.readInt();
+				Object[] args = argCount < 0 ? null : new Object[argCount];
+				for (int i = 0; i < argCount; i++) {
+					args[i] = readValue(in);
+				}
+				return new OMObject(type, args);
+			case STRING:
+				return readString(in);
+			case URI_REF:
+				return URIs.createURI(readString(in));
+			case BIG_INTEGER:
+				return new BigInteger(readBytes(in));
+			case INTEGER:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case DOUBLE:
+				return in.readDouble();
+			case FLOAT:
+				return in.readFloat();
+			case BIG_DECIMAL:
+				return new BigDecimal(readString(in));
+			case BOOLEAN:
+				return in.readBoolean();
+			case BYTES:
+				return readBytes(in);
+			case OBJECT_ARRAY:
+			case ARRAY:
+				Object[] array = tag == OBJECT_ARRAY ? new OMObject[in.readInt()] : new Object[in.readInt()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = readValue(in);
+				}
+				return array;
+			case LIST:
+				int size = in.readInt();
+				List<Object> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					list.add(readValue(in));
+				}
+				return list;
+			default:
+				throw new IOException("Invalid value tag " + tag);
+		}
+	}
+
+	/**
+	 * Writes strings as length-prefixed UTF-8 as {@link DataOutputStream#writeUTF(String)} is limited to
+	 * 65535 bytes.
+	 */
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.cache.Cache;
+import net.enilink.commons.util.Pair;
+import net.enilink.komma.core.IReference;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.query.impl.SimpleDataset;
+import org.eclipse.rdf4j.sail.SailConnection;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * The shards of the computed values of a {@link NumerateWebSail}, one for each target graph.
+ * <p>
+ * A shard holds the readable graphs of its target graph and the values that have been computed within it.
+ * The values of all shards are kept in one cache keyed by shard and resource, hence the property cache
+ * specification bounds the values of all shards together. Shards are created lazily and the least recently
+ * used shards are evicted, their values are no longer accessible and are evicted by the value cache over time.
+ * The readable graphs are determined by an {@link ImportGraph}.
+ */
+class GraphShards {
+	/**
+	 * Key of the shard for the default graph.
+	 */
+	private static final Object DEFAULT_GRAPH = new Object();
+
+	static class Shard {
+		final Resource graph;
+		/**
+		 * The readable graphs, starting with the target graph. Empty for the default graph.
+		 */
+		final Resource[] context;
+		final SimpleDataset dataset = new SimpleDataset();
+		final CachedEntity.Ids ids;
+		/**
+		 * The values of all shards, keyed by the shard and the resource.
+		 */
+		private final Cache<Pair<Shard, Object>, CachedEntity> values;
+
+		Shard(Resource graph, Resource[] context, Cache<Pair<Shard, Object>, CachedEntity> values,
+		      CachedEntity.Ids ids) {
+			this.graph = graph;
+			this.context = context;
+			this.values = values;
+			this.ids = ids;
+			for (Resource ctx : context) {
+				dataset.addDefaultGraph((IRI) ctx);
+				dataset.addNamedGraph((IRI) ctx);
+			}
+		}
+
+		/**
+		 * Returns the cached values of a resource or <code>null</code> if none are cached.
+		 */
+		CachedEntity getEntity(Object resource) {
+			return values.getIfPresent(new Pair<>(this, resource));
+		}
+
+		/**
+		 * Returns the cached values of a resource and creates an empty entity if required.
+		 */
+		CachedEntity getOrCreateEntity(Object resource) {
+			try {
+				return values.get(new Pair<>(this, resource), () -> new CachedEntity(ids));
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		void putEntity(Object resource, CachedEntity entity) {
+			values.put(new Pair<>(this, resource), entity);
+		}
+
+		/**
+		 * Estimates the weight of an entity again after it has grown unless it has been invalidated in the
+		 * meantime.
+		 */
+		void reweigh(Object resource, CachedEntity entity) {
+			values.asMap().replace(new Pair<>(this, resource), entity, entity);
+		}
+
+		void invalidate(Object resource) {
+			values.invalidate(new Pair<>(this, resource));
+		}
+
+		/**
+		 * Returns an evaluation context for this shard with the connection of <code>ctx</code>.
+		 */
+		EvaluationContext context(EvaluationContext ctx) {
+			return ctx.withGraphs(context, dataset);
+		}
+	}
+
+	private final Cache<Object, Shard> shards;
+	private final Cache<Pair<Shard, Object>, CachedEntity> values;
+	private final ImportGraph imports = new ImportGraph();
+	private final CachedEntity.Ids ids = new CachedEntity.Ids();
+
+	GraphShards(SailCaches caches) {
+		// the values of the shards are weighed by the value cache
+		this.shards = caches.build(NumerateWebSail.DATASET_CACHE, (graph, shard) -> 256 + 64 * shard.context.length);
+		// entities are weighed again by the evaluator when their tables grow
+		this.values = caches.build(NumerateWebSail.PROPERTY_CACHE,
+				(key, entity) -> 32 + SailCaches.weigh(key.getSecond()) + entity.weigh());
+	}
+
+	/**
+	 * Returns the shard of the given target graph and creates it if required.
+	 *
+	 * @param connection the connection that is used to determine the readable graphs of a new shard
+	 * @param graph      the target graph or <code>null</code> for the default graph
+	 */
+	Shard get(SailConnection connection, Resource graph) {
+		try {
+			return shards.get(graph == null ? DEFAULT_GRAPH : graph, () -> createShard(connection, graph));
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private Shard createShard(SailConnection connection, Resource graph) {
+		if (graph == null) {
+			return new Shard(null, Rdf4jModelAccess.EMPTY_CTX, values, ids);
+		}
+		return new Shard(graph, imports.getClosure(connection, graph), values, ids);
+	}
+
+	/**
+	 * Updates the readable graphs after the <code>owl:imports</code> statements of the given graphs have
+	 * changed. The shards of the target graphs whose readable graphs have changed are removed.
+	 *
+	 * @return the target graphs whose readable graphs have changed
+	 */
+	Set<Resource> updateImports(SailConnection connection, Collection<? extends Resource> graphs) {
+		Set<Resource> changed = imports.update(connection, graphs);
+		shards.invalidateAll(changed);
+		return changed;
+	}
+
+	/**
+	 * Removes the cached values of a resource from all shards.
+	 */
+	void invalidate(Resource resource) {
+		for (Shard shard : shards.asMap().values()) {
+			shard.invalidate(resource);
+		}
+	}
+
+	/**
+	 * Removes the cached values of a property of the given resources from the shards that are able to read
+	 * them.
+	 *
+	 * @param properties the changed properties of resources
+	 * @param contexts   returns the graphs that contain the types of a resource
+	 */
+	void invalidate(Map<Resource, Set<IReference>> properties, Function<Resource, List<Resource>> contexts) {
+		for (Map.Entry<Resource, Set<IReference>> entry : properties.entrySet()) {
+			for (Shard shard : getReadingShards(contexts.apply(entry.getKey()))) {
+				CachedEntity entity = shard.getEntity(entry.getKey());
+				if (entity != null) {
+					entry.getValue().forEach(entity::removeProperty);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the existing shards whose readable graphs contain one of the given graphs. Statements of the
+	 * default graph are only read by the shard of the default graph.
+	 */
+	private Collection<Shard> getReadingShards(List<Resource> graphs) {
+		if (graphs.isEmpty()) {
+			// the graphs of the resource are unknown
+			return shards.asMap().values();
+		}
+		Set<Object> keys = new HashSet<>();
+		keys.add(DEFAULT_GRAPH);
+		for (Resource graph : graphs) {
+			if (graph != null) {
+				keys.addAll(imports.getImporting(graph));
+			}
+		}
+		List<Shard> reading = new ArrayList<>(keys.size());
+		for (Object key : keys) {
+			Shard shard = shards.getIfPresent(key);
+			if (shard != null) {
+				reading.add(shard);
+			}
+		}
+		return reading;
+	}
+
+	/**
+	 * Removes all shards with their values, the indexed imports and the ids of properties and contexts.
+	 */
+	void invalidateAll() {
+		shards.invalidateAll();
+		values.invalidateAll();
+		imports.clear();
+		ids.clear();
+	}
+}
@@ -15,19 +15,15 @@
  */
 package org.numerateweb.rdf4j;
 
-import java.util.concurrent.TimeUnit;
-
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import org.numerateweb.math.reasoner.AbstractCache;
+import com.google.common.cache.CacheStats;
 import org.numerateweb.math.reasoner.CacheResult;
 
-class GuavaCache<K, T> extends AbstractCache<K, T> {
+class GuavaCache<K, T> extends InstrumentedCache<K, T> {
 	private Cache<Object, Object> cache;
 
-	public GuavaCache() {
-		cache = CacheBuilder.newBuilder().maximumSize(10000000)
-				.expireAfterWrite(60, TimeUnit.SECONDS).build();
+	public GuavaCache(Cache<Object, Object> cache) {
+		this.cache = cache;
 	}
 
 	private final static Object NULL = new Object();
@@ -60,4 +56,14 @@ class GuavaCache<K, T> extends AbstractCache<K, T> {
 	public void clear() {
 		cache.invalidateAll();
 	}
+
+	@Override
+	public long size() {
+		return cache.size();
+	}
+
+	@Override
+	public CacheStats stats() {
+		return cache.stats();
+	}
 }
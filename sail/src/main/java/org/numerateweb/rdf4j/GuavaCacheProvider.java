@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Provides caches that are based on Guava.
+ */
+public class GuavaCacheProvider implements CacheProvider {
+	public static final String NAME = "guava";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public <K, V> InstrumentedCache<K, V> createCache(String spec) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.from(spec).recordStats();
+		if (spec.contains("maximumWeight")) {
+			builder.weigher((key, value) -> SailCaches.weigh(key) + SailCaches.weigh(value));
+		}
+		return new GuavaCache<>(builder.build());
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+
+import java.util.*;
+
+/**
+ * Index of the <code>owl:imports</code> statements of named graphs and of the readable graphs that result
+ * from them.
+ * <p>
+ * The imports of a graph are stated within the graph itself. They are read from the store when they are
+ * required for the first time and are then shared by the closures of all graphs that import the graph.
+ * If the imports of a graph change then only the closures of this graph and of the graphs that
+ * transitively import it are computed again.
+ */
+class ImportGraph {
+	private final Map<Resource, List<Resource>> imports = new HashMap<>();
+	private final Map<Resource, Set<Resource>> importedBy = new HashMap<>();
+	private final Map<Resource, Resource[]> closures = new HashMap<>();
+
+	/**
+	 * Returns the readable graphs of the given graph, starting with the graph itself followed by its direct
+	 * and indirect imports in breadth-first order.
+	 */
+	synchronized Resource[] getClosure(SailConnection connection, Resource graph) {
+		Resource[] closure = closures.get(graph);
+		if (closure == null) {
+			List<Resource> contexts = new ArrayList<>();
+			Set<Resource> seen = new HashSet<>();
+			Queue<Resource> queue = new ArrayDeque<>();
+			seen.add(graph);
+			queue.add(graph);
+			while (!queue.isEmpty()) {
+				Resource current = queue.remove();
+				contexts.add(current);
+				for (Resource imported : getImports(connection, current)) {
+					if (seen.add(imported)) {
+						queue.add(imported);
+					}
+				}
+			}
+			closure = contexts.toArray(new Resource[contexts.size()]);
+			closures.put(graph, closure);
+		}
+		return closure;
+	}
+
+	private List<Resource> getImports(SailConnection connection, Resource graph) {
+		List<Resource> imported = imports.get(graph);
+		if (imported == null) {
+			imported = new ArrayList<>();
+			try (CloseableIteration<? extends Statement, SailException> stmts =
+					     connection.getStatements(graph, OWL.IMPORTS, null, false, graph)) {
+				while (stmts.hasNext()) {
+					Statement stmt = stmts.next();
+					if (stmt.getObject() instanceof IRI && !imported.contains(stmt.getObject())) {
+						imported.add((IRI) stmt.getObject());
+					}
+				}
+			}
+			imports.put(graph, imported);
+			for (Resource importedGraph : imported) {
+				importedBy.computeIfAbsent(importedGraph, g -> new HashSet<>()).add(graph);
+			}
+		}
+		return imported;
+	}
+
+	/**
+	 * Reads the imports of the given graphs again and updates the affected closures.
+	 *
+	 * @param connection the connection that is used to read the changed imports
+	 * @param graphs     the graphs whose <code>owl:imports</code> statements have changed
+	 * @return the graphs whose closures have changed
+	 */
+	synchronized Set<Resource> update(SailConnection connection, Collection<? extends Resource> graphs) {
+		Set<Resource> affected = new HashSet<>();
+		for (Resource graph : graphs) {
+			if (imports.containsKey(graph)) {
+				addImporting(graph, affected);
+			}
+		}
+		for (Resource graph : graphs) {
+			List<Resource> imported = imports.remove(graph);
+			if (imported != null) {
+				for (Resource importedGraph : imported) {
+					Set<Resource> importing = importedBy.get(importedGraph);
+					if (importing != null && importing.remove(graph) && importing.isEmpty()) {
+						importedBy.remove(importedGraph);
+					}
+				}
+			}
+		}
+		Set<Resource> changed = new HashSet<>();
+		for (Resource graph : affected) {
+			Resource[] closure = closures.remove(graph);
+			if (closure != null && !Arrays.equals(closure, getClosure(connection, graph))) {
+				changed.add(graph);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns the given graph and all graphs with known closures that directly or indirectly import it.
+	 */
+	synchronized Set<Resource> getImporting(Resource graph) {
+		Set<Resource> importing = new HashSet<>();
+		addImporting(graph, importing);
+		return importing;
+	}
+
+	private void addImporting(Resource graph, Set<Resource> importing) {
+		Queue<Resource> queue = new ArrayDeque<>();
+		queue.add(graph);
+		while (!queue.isEmpty()) {
+			Resource current = queue.remove();
+			if (importing.add(current)) {
+				queue.addAll(importedBy.getOrDefault(current, Collections.emptySet()));
+			}
+		}
+	}
+
+	synchronized void clear() {
+		imports.clear();
+		importedBy.clear();
+		closures.clear();
+	}
+}
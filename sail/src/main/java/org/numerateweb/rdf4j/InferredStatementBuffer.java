@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnectionWrapper;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Connection that buffers the additions and removals of inferred statements and writes them in sorted
+ * batches to the wrapped connection.
+ * <p>
+ * A removal cancels the buffered additions that it matches and an addition cancels the buffered removal of
+ * the same statement. Hence, removals can always be written before additions. If a removed statement is known
+ * to exist then adding it again cancels both changes and nothing is written unless the statement is also
+ * matched by a buffered removal pattern.
+ * <p>
+ * Reads through this connection, e.g. with <code>getStatements</code>, are not affected by the buffered
+ * changes and only return the statements of the wrapped connection. A caller that computes a value again
+ * before the buffer is flushed has to drop its earlier result with {@link #cancelAdditions(Resource, IRI)}.
+ */
+class InferredStatementBuffer extends InferencerConnectionWrapper {
+	static final int DEFAULT_BATCH_SIZE = 10000;
+
+	private static final Comparator<Value> VALUE_ORDER = Comparator.nullsFirst(
+			Comparator.comparing((Value value) -> value.isLiteral())
+					.thenComparing(Value::stringValue));
+	private static final Comparator<Statement> STATEMENT_ORDER = Comparator
+			.comparing(Statement::getContext, VALUE_ORDER)
+			.thenComparing(Statement::getSubject, VALUE_ORDER)
+			.thenComparing(Statement::getPredicate, VALUE_ORDER)
+			.thenComparing(Statement::getObject, VALUE_ORDER);
+	private static final Comparator<Removal> REMOVAL_ORDER = Comparator
+			.comparing((Removal removal) -> removal.subject, VALUE_ORDER)
+			.thenComparing(removal -> removal.predicate, VALUE_ORDER)
+			.thenComparing(removal -> removal.object, VALUE_ORDER);
+
+	/**
+	 * A removal of inferred statements where <code>null</code> values are wildcards. An empty array of
+	 * contexts matches all contexts.
+	 */
+	private static class Removal {
+		final Resource subject;
+		final IRI predicate;
+		final Value object;
+		final Resource[] contexts;
+
+		Removal(Resource subject, IRI predicate, Value object, Resource[] contexts) {
+			this.subject = subject;
+			this.predicate = predicate;
+			this.object = object;
+			this.contexts = contexts;
+		}
+
+		boolean matches(Statement stmt) {
+			if (subject != null && !subject.equals(stmt.getSubject()) ||
+					predicate != null && !predicate.equals(stmt.getPredicate()) ||
+					object != null && !object.equals(stmt.getObject())) {
+				return false;
+			}
+			if (contexts.length == 0) {
+				return true;
+			}
+			for (Resource context : contexts) {
+				if (Objects.equals(context, stmt.getContext())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Removal)) {
+				return false;
+			}
+			Removal other = (Removal) o;
+			return Objects.equals(subject, other.subject) && Objects.equals(predicate, other.predicate) &&
+					Objects.equals(object, other.object) && Arrays.equals(contexts, other.contexts);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(subject, predicate, object) * 31 + Arrays.hashCode(contexts);
+		}
+	}
+
+	private final ValueFactory vf = SimpleValueFactory.getInstance();
+	private final int batchSize;
+	private final Set<Removal> removals = new LinkedHashSet<>();
+	/**
+	 * The buffered additions indexed by their subjects.
+	 */
+	private final Map<Resource, Set<Statement>> additions = new HashMap<>();
+	/**
+	 * The buffered removals of existing statements indexed by their subjects.
+	 */
+	private final Map<Resource, Set<Statement>> existingRemovals = new HashMap<>();
+	private int size;
+	private long flushCount;
+
+	InferredStatementBuffer(InferencerConnection connection) {
+		this(connection, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param connection the connection that receives the inferred statements
+	 * @param batchSize  the number of buffered changes that triggers a flush
+	 */
+	InferredStatementBuffer(InferencerConnection connection, int batchSize) {
+		super(connection);
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean addInferredStatement(Resource subj, IRI pred, Value obj, Resource... contexts)
+			throws SailException {
+		if (contexts.length == 0) {
+			add(vf.createStatement(subj, pred, obj));
+		} else {
+			for (Resource context : contexts) {
+				add(vf.createStatement(subj, pred, obj, context));
+			}
+		}
+		return true;
+	}
+
+	private void add(Statement stmt) {
+		Set<Statement> removed = existingRemovals.get(stmt.getSubject());
+		if (removed != null && removed.remove(stmt)) {
+			size--;
+			if (!matchesRemoval(stmt)) {
+				// the statement is kept as it is
+				return;
+			}
+			// the statement is removed by a pattern and needs to be added again
+		}
+		if (!removals.isEmpty() && removals.remove(new Removal(stmt.getSubject(), stmt.getPredicate(),
+				stmt.getObject(), new Resource[]{stmt.getContext()}))) {
+			size--;
+		}
+		if (additions.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>()).add(stmt)) {
+			size++;
+		}
+		flushIfFull();
+	}
+
+	@Override
+	public boolean removeInferredStatement(Resource subj, IRI pred, Value obj, Resource... contexts)
+			throws SailException {
+		Removal removal = new Removal(subj, pred, obj, contexts);
+		size -= cancel(additions, removal);
+		// removals of existing statements are covered by the new removal
+		size -= cancel(existingRemovals, removal);
+		if (removals.add(removal)) {
+			size++;
+		}
+		flushIfFull();
+		return true;
+	}
+
+	/**
+	 * Removes an inferred statement that is known to exist in the store.
+	 *
+	 * @param stmt an existing statement, e.g. as returned by <code>getStatements</code>
+	 */
+	void removeExisting(Statement stmt) throws SailException {
+		Set<Statement> added = additions.get(stmt.getSubject());
+		if (added != null && added.remove(stmt)) {
+			size--;
+		}
+		if (existingRemovals.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>()).add(stmt)) {
+			size++;
+		}
+		flushIfFull();
+	}
+
+	/**
+	 * Drops the buffered additions with the given subject and predicate. Buffered removals are kept, hence the
+	 * statements that are returned by reads of the wrapped connection can be removed and added again as before.
+	 *
+	 * @return the number of dropped additions
+	 */
+	int cancelAdditions(Resource subj, IRI pred) {
+		Set<Statement> added = additions.get(subj);
+		if (added == null) {
+			return 0;
+		}
+		int cancelled = 0;
+		for (Iterator<Statement> it = added.iterator(); it.hasNext(); ) {
+			if (it.next().getPredicate().equals(pred)) {
+				it.remove();
+				cancelled++;
+			}
+		}
+		size -= cancelled;
+		return cancelled;
+	}
+
+	/**
+	 * Returns <code>true</code> if statements with the given subject and predicate are buffered to be added or
+	 * removed. Changes that have already been flushed are not taken into account.
+	 *
+	 * @see #getFlushCount()
+	 */
+	boolean hasChanges(Resource subj, IRI pred) {
+		if (containsPredicate(additions.get(subj), pred) || containsPredicate(existingRemovals.get(subj), pred)) {
+			return true;
+		}
+		for (Removal removal : removals) {
+			if ((removal.subject == null || removal.subject.equals(subj)) &&
+					(removal.predicate == null || removal.predicate.equals(pred))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean matchesRemoval(Statement stmt) {
+		for (Removal removal : removals) {
+			if (removal.matches(stmt)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean containsPredicate(Set<Statement> stmts, IRI pred) {
+		return stmts != null && stmts.stream().anyMatch(stmt -> stmt.getPredicate().equals(pred));
+	}
+
+	/**
+	 * Cancels the buffered additions with the given subject and predicate whose value is considered to be equal
+	 * to the value of a buffered removal of an existing statement within the same context. These existing
+	 * statements are kept unless they are matched by a buffered removal pattern.
+	 *
+	 * @param equal compares the value of an existing statement with the value of an added statement
+	 */
+	void keepExisting(Resource subj, IRI pred, BiPredicate<Value, Value> equal) {
+		Set<Statement> added = additions.get(subj);
+		Set<Statement> removed = existingRemovals.get(subj);
+		if (added == null || removed == null) {
+			return;
+		}
+		for (Iterator<Statement> it = added.iterator(); it.hasNext(); ) {
+			Statement addedStmt = it.next();
+			if (!addedStmt.getPredicate().equals(pred)) {
+				continue;
+			}
+			Optional<Statement> existing = removed.stream()
+					.filter(stmt -> stmt.getPredicate().equals(pred) && !matchesRemoval(stmt) &&
+							Objects.equals(stmt.getContext(), addedStmt.getContext()) &&
+							equal.test(stmt.getObject(), addedStmt.getObject()))
+					.findFirst();
+			if (existing.isPresent()) {
+				it.remove();
+				removed.remove(existing.get());
+				size -= 2;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of times that the buffered changes have been written to the wrapped connection.
+	 */
+	long getFlushCount() {
+		return flushCount;
+	}
+
+	private int cancel(Map<Resource, Set<Statement>> statements, Removal removal) {
+		int cancelled = 0;
+		Iterable<Set<Statement>> candidates = removal.subject != null ?
+				Collections.singleton(statements.getOrDefault(removal.subject, Collections.emptySet())) :
+				statements.values();
+		for (Set<Statement> stmts : candidates) {
+			for (Iterator<Statement> it = stmts.iterator(); it.hasNext(); ) {
+				if (removal.matches(it.next())) {
+					it.remove();
+					cancelled++;
+				}
+			}
+		}
+		return cancelled;
+	}
+
+	private void flushIfFull() {
+		if (size >= batchSize) {
+			flushInferred();
+		}
+	}
+
+	/**
+	 * Writes all buffered changes to the wrapped connection.
+	 */
+	void flushInferred() throws SailException {
+		InferencerConnection connection = (InferencerConnection) getWrappedConnection();
+		List<Removal> sortedRemovals = new ArrayList<>(removals);
+		sortedRemovals.sort(REMOVAL_ORDER);
+		for (Removal removal : sortedRemovals) {
+			connection.removeInferredStatement(removal.subject, removal.predicate, removal.object,
+					removal.contexts);
+		}
+		removals.clear();
+		for (Statement stmt : sorted(existingRemovals)) {
+			connection.removeInferredStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(),
+					stmt.getContext());
+		}
+
+		for (Statement stmt : sorted(additions)) {
+			if (stmt.getContext() == null) {
+				connection.addInferredStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject());
+			} else {
+				connection.addInferredStatement(stmt.getSubject(), stmt.getPredicate(), stmt.getObject(),
+						stmt.getContext());
+			}
+		}
+		size = 0;
+		flushCount++;
+	}
+
+	private List<Statement> sorted(Map<Resource, Set<Statement>> statements) {
+		List<Statement> sorted = new ArrayList<>();
+		statements.values().forEach(sorted::addAll);
+		statements.clear();
+		sorted.sort(STATEMENT_ORDER);
+		return sorted;
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.cache.CacheStats;
+import org.numerateweb.math.reasoner.AbstractCache;
+
+/**
+ * A cache that records statistics about its usage.
+ */
+public abstract class InstrumentedCache<K, T> extends AbstractCache<K, T> {
+	/**
+	 * Returns the (approximate) number of entries of this cache.
+	 */
+	public abstract long size();
+
+	/**
+	 * Returns a snapshot of the statistics of this cache.
+	 */
+	public abstract CacheStats stats();
+}
@@ -15,11 +15,11 @@
  */
 package org.numerateweb.rdf4j;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import net.enilink.commons.util.Pair;
 import net.enilink.komma.core.IReference;
 import net.enilink.komma.core.KommaModule;
 import net.enilink.komma.literals.LiteralConverter;
@@ -28,12 +28,15 @@ import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.transaction.IsolationLevel;
 import org.eclipse.rdf4j.common.transaction.IsolationLevels;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XSD;
 import org.eclipse.rdf4j.query.BindingSet;
-import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.impl.ListBindingSet;
@@ -45,7 +48,6 @@ import org.eclipse.rdf4j.sail.NotifyingSailConnection;
 import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.SailException;
 import org.eclipse.rdf4j.sail.helpers.NotifyingSailWrapper;
-import org.eclipse.rdf4j.sail.helpers.SailConnectionWrapper;
 import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
 import org.numerateweb.math.rdf.NWMathModule;
 import org.numerateweb.math.rdf.rules.NWRULES;
@@ -54,13 +56,55 @@ import org.numerateweb.math.util.SparqlUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class NumerateWebSail extends NotifyingSailWrapper {
+public class NumerateWebSail extends NotifyingSailWrapper implements NumerateWebSailMXBean {
+
+	/**
+	 * Cache for the computed property values of resources. Each graph shard has its own cache with this
+	 * specification.
+	 */
+	public static final String PROPERTY_CACHE = "properties";
+	/**
+	 * Cache for the graph shards that hold the readable graphs and the computed values of target graphs.
+	 */
+	public static final String DATASET_CACHE = "datasets";
+	/**
+	 * Cache for the dependencies that have been stored as <code>usedBy</code> statements.
+	 */
+	public static final String DEPENDENCY_CACHE = "dependencies";
+	/**
+	 * Cache for parsed expression strings.
+	 */
+	public static final String EXPRESSION_CACHE = "expressions";
+	/**
+	 * Cache for the Java objects of literal values.
+	 */
+	public static final String LITERAL_CACHE = "literals";
+	/**
+	 * Caches that are used by the evaluator, e.g. for resource information.
+	 */
+	public static final String EVALUATION_CACHE = "evaluation";
 
 	static private final Logger logger = LoggerFactory.getLogger(NumerateWebSail.class);
+	private static final AtomicInteger instanceNumber = new AtomicInteger();
 
 	private static final String TARGETS_QUERY = Rdf4jModelAccess.PREFIX +
 			SparqlUtils.prefix("mathrl", NWRULES.NAMESPACE)
@@ -73,25 +117,48 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 			+ "}";
 	protected static final ParsedQuery targetsQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, TARGETS_QUERY,
 			null);
+	private static final String DATA_FILE_PREFIX = "numerateweb-";
+	private static final String LOCK_DIR = "lock";
+	private static final String DEPENDENCY_INDEX_FILE = DATA_FILE_PREFIX + "dependencies.bin";
+	private static final String EXPRESSION_STORE_FILE = DATA_FILE_PREFIX + "expressions.bin";
 	private static final IsolationLevels READ_COMMITTED = IsolationLevels.READ_COMMITTED;
-	private static final DatasetInfo EMPTY_DATASET = new DatasetInfo();
-	protected final CacheManager cacheManager = new CacheManager(GuavaCache::new);
+	private static final int GRAPH_LOCK_STRIPES = 64;
+	/**
+	 * Lock key for the default graph.
+	 */
+	private static final Object DEFAULT_GRAPH = new Object();
+	protected final SailCaches caches = new SailCaches();
+	protected CacheManager cacheManager;
+	protected final DependencyGraph dependencies = new DependencyGraph();
+	protected final ExpressionStore expressions = new ExpressionStore();
 	protected Injector injector;
 	protected RDF4JValueConverter valueConverter;
 	protected LiteralConverter literalConverter;
-	protected Map<Resource, Rdf4jEvaluator> evaluators = new HashMap<>();
-	protected boolean initialInferencingDone = false;
-	protected ThreadLocal<SailConnection> connection = new ThreadLocal<>();
+	protected volatile boolean initialInferencingDone = false;
 	protected Rdf4jModelAccess modelAccess;
-	volatile boolean inferencing = false;
+	AsyncInferencer asyncInferencer;
 	IRI USED_BY;
 	IRI CONSTRAINT_PROPERTY;
 	IRI ONPROPERTY;
-	private DatasetInfo activeDataset = EMPTY_DATASET;
-	private Cache<Resource, DatasetInfo> datasetCache = CacheBuilder.newBuilder().maximumSize(10000).build();
+	/**
+	 * Held exclusively by full inferencing runs and schema changes, shared by incremental runs.
+	 */
+	private final ReadWriteLock inferencingLock = new ReentrantReadWriteLock();
+	/**
+	 * Locks of the target graphs that are updated by incremental runs.
+	 */
+	private final Striped<Lock> graphLocks = Striped.lazyWeakLock(GRAPH_LOCK_STRIPES);
 	private boolean incrementalInference = true;
-
-	private Cache<Object, CachedEntity> propertyCache;
+	private boolean asyncInferencing = false;
+	private long coalescingWindow = 0;
+	private int coalescingMaxChanges = 10000;
+	private double changeTolerance = 0;
+	private int inferencingThreads = 1;
+	private boolean dependencyStatements = false;
+	private boolean compiledExpressions = true;
+	private boolean jmxEnabled = false;
+	private ObjectName mbeanName;
+	private GraphShards shards;
 
 	public NumerateWebSail() {
 		super();
@@ -103,6 +170,8 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 
 	@Override
 	public void init() throws SailException {
+		// the files are inspected before the base sail has opened them
+		long storeStamp = computeStoreStamp();
 		super.init();
 		KommaModule module = new NWMathModule();
 		injector = Guice.createInjector(new LiteralConverterModule(module), new AbstractModule() {
@@ -117,12 +186,178 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 		USED_BY = getValueFactory().createIRI(NWRULES.NAMESPACE + "usedBy");
 		CONSTRAINT_PROPERTY = getValueFactory().createIRI(NWRULES.PROPERTY_CONSTRAINT.toString());
 		ONPROPERTY = getValueFactory().createIRI(NWRULES.PROPERTY_ONPROPERTY.toString());
-		Supplier<SailConnection> connSupplier = () -> this.connection.get();
-		Supplier<Resource[]> contextSupplier = () -> this.activeDataset.context;
-		Supplier<Dataset> datasetSupplier = () -> this.activeDataset.dataset;
-		modelAccess = new Rdf4jModelAccess(literalConverter,
-				getValueFactory(), connSupplier, contextSupplier, datasetSupplier, cacheManager);
-		propertyCache = CacheBuilder.newBuilder().maximumSize(100000).build();
+		cacheManager = new CacheManager(() -> caches.create(EVALUATION_CACHE));
+		loadExpressions();
+		modelAccess = new Rdf4jModelAccess(literalConverter, getValueFactory(), cacheManager, dependencies, caches,
+				expressions);
+		modelAccess.setDependencyStatements(dependencyStatements);
+		modelAccess.setCompiledExpressions(compiledExpressions);
+		shards = new GraphShards(caches);
+		loadDependencies(storeStamp);
+		if (asyncInferencing) {
+			asyncInferencer = new AsyncInferencer(this, coalescingWindow, coalescingMaxChanges);
+		}
+		if (jmxEnabled) {
+			registerMBean();
+		}
+	}
+
+	@Override
+	public void shutDown() throws SailException {
+		try {
+			if (asyncInferencer != null) {
+				asyncInferencer.shutDown();
+				asyncInferencer = null;
+			}
+			storeExpressions();
+			if (shards != null) {
+				// release the cached values and the interned properties and contexts
+				shards.invalidateAll();
+			}
+			unregisterMBean();
+		} finally {
+			super.shutDown();
+		}
+		// the stamp is computed after the base sail has written its files
+		storeDependencies();
+	}
+
+	private void registerMBean() {
+		try {
+			mbeanName = new ObjectName("org.numerateweb.rdf4j:type=NumerateWebSail,instance="
+					+ instanceNumber.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+					new StandardMBean(this, NumerateWebSailMXBean.class, true), mbeanName);
+		} catch (JMException e) {
+			logger.warn("Unable to register MBean", e);
+			mbeanName = null;
+		}
+	}
+
+	private void unregisterMBean() {
+		if (mbeanName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+			} catch (JMException e) {
+				logger.warn("Unable to unregister MBean {}", mbeanName, e);
+			}
+			mbeanName = null;
+		}
+	}
+
+	/**
+	 * Loads the dependency index that has been stored by the last shutdown.
+	 * <p>
+	 * The file is deleted afterwards so that an index which is outdated due to an unclean shutdown is never
+	 * used. If the index could be loaded and the store has not been changed since it was stored then the
+	 * initial full inferencing run is skipped.
+	 *
+	 * @param storeStamp the stamp of the store's files before the base sail has been initialized
+	 */
+	private void loadDependencies(long storeStamp) {
+		File file = getDependencyIndexFile();
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try {
+			if (dependencies.read(file, getValueFactory()) == storeStamp) {
+				initialInferencingDone = true;
+				logger.info("Loaded dependency index from {}", file);
+			} else {
+				dependencies.clear();
+				logger.info("Discarded dependency index {} as the store has been changed", file);
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to load dependency index from {}", file, e);
+		} finally {
+			if (!file.delete()) {
+				logger.warn("Unable to delete dependency index {}", file);
+			}
+		}
+	}
+
+	private void storeDependencies() {
+		File file = getDependencyIndexFile();
+		if (file == null || !initialInferencingDone) {
+			return;
+		}
+		try {
+			dependencies.write(file, computeStoreStamp());
+		} catch (IOException e) {
+			logger.error("Unable to store dependency index to {}", file, e);
+		}
+	}
+
+	/**
+	 * Computes a stamp of the files that the underlying store keeps in the data directory from their paths,
+	 * sizes and modification times. Any commit to the store, also while this sail is not running, changes
+	 * the stamp without requiring a scan of the statements. The files of this sail and the lock directory
+	 * are not included.
+	 */
+	private long computeStoreStamp() {
+		File dataDir = getDataDir();
+		if (dataDir == null || !dataDir.isDirectory()) {
+			return 0;
+		}
+		Path root = dataDir.toPath();
+		try (Stream<Path> files = Files.walk(root)) {
+			long stamp = 0xCBF29CE484222325L;
+			for (Path path : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+				Path relative = root.relativize(path);
+				if (relative.getFileName().toString().startsWith(DATA_FILE_PREFIX)
+						|| relative.startsWith(LOCK_DIR)) {
+					continue;
+				}
+				Instant modified = Files.getLastModifiedTime(path).toInstant();
+				for (long value : new long[]{relative.toString().hashCode(), Files.size(path),
+						modified.getEpochSecond(), modified.getNano()}) {
+					stamp = (stamp ^ value) * 0x100000001B3L;
+				}
+			}
+			return stamp;
+		} catch (IOException | UncheckedIOException e) {
+			logger.warn("Unable to inspect the files in {}", dataDir, e);
+			// a stamp that never matches
+			return System.nanoTime();
+		}
+	}
+
+	private File getDependencyIndexFile() {
+		return getDataFile(DEPENDENCY_INDEX_FILE);
+	}
+
+	/**
+	 * Loads the parsed expressions that have been stored by an earlier shutdown. The stored expressions
+	 * are identified by their contents and hence remain valid if the constraints have changed.
+	 */
+	private void loadExpressions() {
+		File file = getDataFile(EXPRESSION_STORE_FILE);
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try {
+			expressions.read(file);
+			logger.info("Loaded {} expressions from {}", expressions.size(), file);
+		} catch (IOException e) {
+			logger.warn("Unable to load expressions from {}", file, e);
+		}
+	}
+
+	private void storeExpressions() {
+		File file = getDataFile(EXPRESSION_STORE_FILE);
+		if (file == null) {
+			return;
+		}
+		try {
+			expressions.write(file);
+		} catch (IOException e) {
+			logger.error("Unable to store expressions to {}", file, e);
+		}
+	}
+
+	private File getDataFile(String name) {
+		File dataDir = getDataDir();
+		return dataDir != null && dataDir.isDirectory() ? new File(dataDir, name) : null;
 	}
 
 	@Override
@@ -130,33 +365,64 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 		return new NumerateWebSailConnection(this, (InferencerConnection) super.getConnection());
 	}
 
-	public synchronized void reevaluate(SailConnection connection, Map<Resource, List<Resource>> changedResources,
-	                                    Map<Resource, List<IRI>> changedClasses) {
+	/**
+	 * Updates the inferred statements for the given changes.
+	 * <p>
+	 * Incremental runs for changes of property values may run concurrently if they update disjoint target
+	 * graphs. Full inferencing runs, schema changes, changes of <code>owl:imports</code> statements and the
+	 * maintenance of <code>usedBy</code> statements are exclusive.
+	 */
+	public void reevaluate(SailConnection connection, Map<Resource, List<Resource>> changedResources,
+	                       Map<Resource, Set<IRI>> changedProperties,
+	                       Map<Resource, List<IRI>> changedClasses) {
+		List<Resource> changedImports = new ArrayList<>();
+		changedProperties.forEach((resource, properties) -> {
+			if (properties.contains(OWL.IMPORTS)) {
+				changedImports.add(resource);
+			}
+		});
+		boolean exclusive = !changedClasses.isEmpty() || !changedImports.isEmpty() || dependencyStatements;
+		Lock lock = lockForInferencing(exclusive);
 		try {
-			inferencing = true;
-			this.connection.set(connection);
+			// inferred statements are written in batches
+			InferredStatementBuffer inferred = new InferredStatementBuffer((InferencerConnection) connection);
+			EvaluationContext ctx = new EvaluationContext(inferred);
 			modelAccess.clearDependencyCache();
 
 			for (Resource clazz : changedClasses.keySet()) {
 				// remove cached constraints
-				modelAccess.invalidateClassInfo(clazz);
+				modelAccess.invalidateClassInfo(ctx, clazz);
 
 				// find resources affected by class changes
-				((SailConnectionWrapper) connection).getWrappedConnection()
+				ctx.baseConnection()
 						.getStatements(null, RDF.TYPE, clazz, false)
 						.stream()
-						.forEach(stmt -> changedResources.putIfAbsent(stmt.getSubject(), Collections.emptyList()));
+						.forEach(stmt -> {
+							changedResources.putIfAbsent(stmt.getSubject(), Collections.emptyList());
+							// handle like a change of the resource's type
+							changedProperties.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>()).add(RDF.TYPE);
+						});
+			}
+
+			// reinfer the targets of graphs whose readable graphs have changed
+			for (Resource graph : shards.updateImports(ctx.baseConnection(), changedImports)) {
+				ctx.baseConnection()
+						.getStatements(null, RDF.TYPE, null, false, graph)
+						.stream()
+						.forEach(stmt -> {
+							changedResources.putIfAbsent(stmt.getSubject(), Collections.emptyList());
+							changedProperties.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>()).add(RDF.TYPE);
+						});
 			}
 
-			// clear any inferred properties
+			boolean fullInferencing = !initialInferencingDone || !incrementalInference;
+			// clear inferred properties that are affected by schema changes
 			for (Map.Entry<Resource, List<Resource>> entry : changedResources.entrySet()) {
 				Resource resource = entry.getKey();
-				// could be optimized by just removing the changed properties
-				propertyCache.invalidate(resource);
 
 				// combine removed and existing types
 				Set<Resource> types = new HashSet<>(entry.getValue());
-				((SailConnectionWrapper) connection).getWrappedConnection().
+				ctx.baseConnection().
 						getStatements(resource, RDF.TYPE, null, false)
 						.stream()
 						.filter(stmt -> stmt.getObject() instanceof Resource)
@@ -166,103 +432,287 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 				for (Resource type : types) {
 					List<IRI> properties = changedClasses.get(type);
 					if (properties == null) {
-						properties = modelAccess.getConstraintsForClass(type).stream()
+						if (!fullInferencing) {
+							// incremental inferencing only removes the values of affected properties
+							continue;
+						}
+						properties = modelAccess.getConstraintsForClass(ctx, type).stream()
 								.map(info -> modelAccess.mapProperty(info.property))
 								.distinct().collect(Collectors.toList());
 					}
+					shards.invalidate(resource);
 					for (IRI property : properties) {
 						// remove statements for property in any context
-						connection.getStatements(resource, property, null, true).stream().forEach(stmt -> {
-							((InferencerConnection) connection).removeInferredStatement(stmt.getSubject(),
-									stmt.getPredicate(), stmt.getObject(), stmt.getContext());
-						});
+						inferred.removeInferredStatement(resource, property, null);
 					}
 				}
 			}
 
-			if (!initialInferencingDone || !incrementalInference) {
-				doFullInferencing(connection);
+			if (fullInferencing) {
+				doFullInferencing(inferred);
 				initialInferencingDone = true;
 			} else {
-				doIncrementalInferencing(connection, changedResources);
+				doIncrementalInferencing(inferred, changedProperties);
 			}
+			inferred.flushInferred();
 		} finally {
-			inferencing = false;
+			lock.unlock();
 		}
 	}
 
-	public void doIncrementalInferencing(SailConnection connection, Map<Resource, List<Resource>> changedResources) {
-		Set<Resource> toUpdate = new HashSet<>();
-
-		logger.info("Updating {} resources", changedResources.size());
+	/**
+	 * Acquires the shared or the exclusive inferencing lock. The exclusive lock is used if a full inferencing
+	 * run is required.
+	 */
+	private Lock lockForInferencing(boolean exclusive) {
+		if (!exclusive) {
+			Lock lock = inferencingLock.readLock();
+			lock.lock();
+			if (initialInferencingDone && incrementalInference) {
+				return lock;
+			}
+			lock.unlock();
+		}
+		Lock lock = inferencingLock.writeLock();
+		lock.lock();
+		return lock;
+	}
 
-		for (Resource instance : changedResources.keySet()) {
-			ResourceInfo instanceInfo = modelAccess.getResourceInfo(instance);
-			Set<IReference> properties = modelAccess.getPropertiesWithConstraintsOfResource(instanceInfo);
-			if (!properties.isEmpty()) {
-				toUpdate.add(instance);
+	public void doIncrementalInferencing(SailConnection connection, Map<Resource, Set<IRI>> changedProperties) {
+		logger.info("Updating {} resources", changedProperties.size());
+		EvaluationContext ctx = new EvaluationContext(connection);
+		modelAccess.loadResourceInfos(ctx, changedProperties.keySet());
 
-				// remove all incoming usedBy edges
-				connection.getStatements(null, USED_BY, instance, true).stream().forEach(stmt -> {
-					Resource parameter = stmt.getSubject();
-					((InferencerConnection) connection).removeInferredStatement(parameter, USED_BY,
-							instance, stmt.getContext());
-				});
+		// lock the graphs of all affected nodes, the nodes are determined again after locking
+		// as other runs may have changed the dependencies in the meantime
+		Set<Object> lockedGraphs = new HashSet<>();
+		List<Lock> locks = Collections.emptyList();
+		try {
+			Set<Pair<Object, IReference>> changed, affected;
+			while (true) {
+				changed = new HashSet<>();
+				affected = collectAffected(ctx, changedProperties, changed);
+				modelAccess.loadResourceInfos(ctx, affected.stream().map(node -> (Resource) node.getFirst())
+						.collect(Collectors.toSet()));
+				Set<Object> graphs = new HashSet<>();
+				for (Pair<Object, IReference> node : affected) {
+					for (Resource graph : modelAccess.getResourceInfo(ctx, (Resource) node.getFirst()).contexts) {
+						graphs.add(graph == null ? DEFAULT_GRAPH : graph);
+					}
+				}
+				if (lockedGraphs.containsAll(graphs)) {
+					break;
+				}
+				locks.forEach(Lock::unlock);
+				lockedGraphs.addAll(graphs);
+				locks = new ArrayList<>();
+				// the stripes are acquired in a consistent order which avoids deadlocks
+				for (Lock lock : graphLocks.bulkGet(lockedGraphs)) {
+					lock.lock();
+					locks.add(lock);
+				}
 			}
+			changedProperties.clear();
+			reevaluateAffected(ctx, changed, affected);
+		} finally {
+			locks.forEach(Lock::unlock);
 		}
-		changedResources.clear();
+	}
 
-		Queue<Resource> queue = new LinkedList<>(toUpdate);
-		while (!queue.isEmpty()) {
-			Resource instance = queue.remove();
-			ResourceInfo instanceInfo = modelAccess.getResourceInfo(instance);
-
-			// recursively update dependents
-			connection.getStatements(instance, USED_BY, null, true).stream().forEach(stmt -> {
-				Resource usedBy = (Resource) stmt.getObject();
-				((InferencerConnection) connection).removeInferredStatement(instance, USED_BY, stmt.getObject(),
-						stmt.getContext());
-				if (toUpdate.add(usedBy)) {
-					propertyCache.invalidate(usedBy);
-
-					ResourceInfo usedByInfo = modelAccess.getResourceInfo(instance);
-					Set<IReference> properties = modelAccess.getPropertiesWithConstraintsOfResource(usedByInfo);
-					for (Resource usedByCtx : instanceInfo.contexts) {
-						for (IReference property : properties) {
-							((InferencerConnection) connection).removeInferredStatement(usedBy,
-									modelAccess.mapProperty(property), null, usedByCtx);
-						}
+	/**
+	 * Determines the (resource, property) nodes that directly depend on the changed statements together with
+	 * all of their transitive dependents.
+	 *
+	 * @param changed receives the nodes that directly depend on the changed statements
+	 */
+	private Set<Pair<Object, IReference>> collectAffected(EvaluationContext ctx,
+	                                                      Map<Resource, Set<IRI>> changedProperties,
+	                                                      Set<Pair<Object, IReference>> changed) {
+		Set<Pair<Object, IReference>> affected = new HashSet<>();
+		Queue<Pair<Object, IReference>> queue = new LinkedList<>();
+		for (Map.Entry<Resource, Set<IRI>> entry : changedProperties.entrySet()) {
+			Resource instance = entry.getKey();
+			Set<IReference> knownProperties = dependencies.getProperties(instance);
+			Set<IReference> constrained = modelAccess.getPropertiesWithConstraintsOfResource(ctx,
+					modelAccess.getResourceInfo(ctx, instance));
+
+			boolean allProperties = entry.getValue().contains(RDF.TYPE);
+			if (!allProperties) {
+				// reads of plain property values are tracked if any known property is not computed by a constraint
+				boolean readsTracked = knownProperties.stream().anyMatch(p -> !constrained.contains(p));
+				for (IRI changedProperty : entry.getValue()) {
+					IReference property = valueConverter.fromRdf4j(changedProperty);
+					if (knownProperties.contains(property) || constrained.contains(property)) {
+						queue.add(new Pair<>(instance, property));
+					} else if (!readsTracked) {
+						// the property may be read by any constraint of the resource
+						allProperties = true;
 					}
 				}
-			});
+			}
+			if (allProperties) {
+				for (IReference property : knownProperties) {
+					queue.add(new Pair<>(instance, property));
+				}
+				for (IReference property : constrained) {
+					queue.add(new Pair<>(instance, property));
+				}
+			}
 		}
 
-		queue = new LinkedList<>(toUpdate);
+		changed.addAll(queue);
+		// collect all transitive dependents of the changed nodes
 		while (!queue.isEmpty()) {
-			Resource instance = queue.remove();
-			ResourceInfo instanceInfo = modelAccess.getResourceInfo(instance);
-
-			for (Resource context : instanceInfo.contexts) {
-				activeDataset = getDataset(context, connection);
-				Rdf4jEvaluator evaluator = evaluators.computeIfAbsent(context, graph -> {
-					return new Rdf4jEvaluator(modelAccess, propertyCache, cacheManager);
-				});
-				for (IReference property : modelAccess.getPropertiesWithConstraintsOfResource(instanceInfo)) {
-					evaluator.evaluateRoot(instance, property, Optional.empty());
+			Pair<Object, IReference> node = queue.remove();
+			if (affected.add(node)) {
+				queue.addAll(dependencies.getDependents(node));
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * Reevaluates the changed nodes and propagates the changes to their dependents. The dependents of a node
+	 * are only scheduled if its value has changed. Nodes are evaluated in topological order of the dependency
+	 * graph so that each one is computed from up-to-date values, see {@link DependencyGraph#propagate}. Values
+	 * that are equal to the existing inferred statements are not written again.
+	 */
+	private void reevaluateAffected(EvaluationContext ctx, Set<Pair<Object, IReference>> changed,
+	                                Set<Pair<Object, IReference>> affected) {
+		InferredStatementBuffer inferred = (InferredStatementBuffer) ctx.connection;
+		// cached values of all changed nodes are outdated, also those of plain properties that are not recomputed
+		Map<Resource, Set<IReference>> changedProperties = new HashMap<>();
+		for (Pair<Object, IReference> node : changed) {
+			changedProperties.computeIfAbsent((Resource) node.getFirst(), r -> new HashSet<>()).add(node.getSecond());
+		}
+		shards.invalidate(changedProperties, r -> modelAccess.getResourceInfo(ctx, r).contexts);
+
+		Map<Resource, Set<IReference>> constrainedOfAffected = new HashMap<>();
+		Map<Resource, Rdf4jEvaluator> evaluators = new HashMap<>();
+		Map<Pair<Resource, Resource>, Set<IReference>> constrainedProperties = new HashMap<>();
+		int evaluated = dependencies.propagate(changed, node -> {
+			Resource instance = (Resource) node.getFirst();
+			Set<IReference> constrained = constrainedOfAffected.computeIfAbsent(instance, r ->
+					modelAccess.getPropertiesWithConstraintsOfResource(ctx, modelAccess.getResourceInfo(ctx, r)));
+			// a changed plain property is always propagated
+			return !constrained.contains(node.getSecond()) || reevaluate(ctx, node, evaluators, constrainedProperties);
+		});
+		logger.debug("Visited {} of {} affected nodes", evaluated, affected.size());
+
+		// release the nodes of deleted resources
+		for (Resource instance : changedProperties.keySet()) {
+			if (!ctx.connection.hasStatement(instance, null, null, false)) {
+				dependencies.removeResource(instance);
+				shards.invalidate(instance);
+			}
+		}
+
+		if (!dependencyStatements) {
+			return;
+		}
+		// remove usedBy edges of the affected resources that are no longer backed by any dependency
+		for (Resource instance : constrainedOfAffected.keySet()) {
+			Set<Object> used = new HashSet<>();
+			for (IReference property : dependencies.getProperties(instance)) {
+				for (Pair<Object, IReference> dependency : dependencies.getDependencies(new Pair<>(instance, property))) {
+					used.add(dependency.getFirst());
 				}
 			}
+			inferred.getStatements(null, USED_BY, instance, true).stream()
+					.filter(stmt -> !used.contains(stmt.getSubject()))
+					.forEach(inferred::removeExisting);
+		}
+	}
+
+	/**
+	 * Removes the cached and inferred values of the given node and evaluates it again.
+	 *
+	 * @return <code>true</code> if the value of the node has changed
+	 */
+	private boolean reevaluate(EvaluationContext ctx, Pair<Object, IReference> node,
+	                           Map<Resource, Rdf4jEvaluator> evaluators,
+	                           Map<Pair<Resource, Resource>, Set<IReference>> constrainedProperties) {
+		InferredStatementBuffer inferred = (InferredStatementBuffer) ctx.connection;
+		Resource instance = (Resource) node.getFirst();
+		shards.invalidate(Map.of(instance, Set.of(node.getSecond())),
+				r -> modelAccess.getResourceInfo(ctx, r).contexts);
+		IRI property = modelAccess.mapProperty(node.getSecond());
+		// drop the result of an earlier round, reads do not see the buffered additions
+		inferred.cancelAdditions(instance, property);
+		try (Stream<? extends Statement> existing = inferred.getStatements(instance, property, null, true)
+				.stream()) {
+			existing.forEach(inferred::removeExisting);
+		}
+		// dependencies are recorded again while evaluating
+		dependencies.removeDependencies(node);
+		long flushCount = inferred.getFlushCount();
+
+		ResourceInfo instanceInfo = modelAccess.getResourceInfo(ctx, instance);
+		for (Resource context : instanceInfo.contexts) {
+			Rdf4jEvaluator evaluator = evaluators.computeIfAbsent(context, graph -> createEvaluator(ctx, graph));
+			Set<IReference> properties = constrainedProperties.computeIfAbsent(new Pair<>(instance, context),
+					key -> modelAccess.getPropertiesWithConstraintsOfResource(evaluator.context, instanceInfo));
+			if (properties.contains(node.getSecond())) {
+				evaluator.evaluateRoot(instance, node.getSecond(), Optional.empty());
+			}
+		}
+
+		// changes are unknown if the buffer has been flushed in the meantime
+		if (inferred.getFlushCount() != flushCount) {
+			return true;
+		}
+		if (changeTolerance > 0) {
+			inferred.keepExisting(instance, property, this::withinTolerance);
 		}
+		return inferred.hasChanges(instance, property);
+	}
+
+	/**
+	 * Returns <code>true</code> if both values are floating point numbers whose relative difference is within
+	 * the change tolerance.
+	 */
+	private boolean withinTolerance(Value existing, Value value) {
+		if (!isFloatingPoint(existing) || !isFloatingPoint(value)) {
+			return false;
+		}
+		try {
+			double a = ((Literal) existing).doubleValue(), b = ((Literal) value).doubleValue();
+			return Math.abs(a - b) <= changeTolerance * Math.max(Math.abs(a), Math.abs(b));
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static boolean isFloatingPoint(Value value) {
+		if (!value.isLiteral()) {
+			return false;
+		}
+		IRI datatype = ((Literal) value).getDatatype();
+		return XSD.DOUBLE.equals(datatype) || XSD.FLOAT.equals(datatype) || XSD.DECIMAL.equals(datatype);
 	}
 
 	public void doFullInferencing(SailConnection connection) {
-		// clear cache completely
-		propertyCache.invalidateAll();
+		// clear cache completely, this also drops the readable graphs of all shards
+		shards.invalidateAll();
+
+		ParallelInferencer parallelInferencer = null;
+		if (inferencingThreads > 1) {
+			// use the existing dependencies to keep related targets within the same partition
+			parallelInferencer = new ParallelInferencer(this, inferencingThreads);
+			dependencies.forEachResourceDependency(parallelInferencer::addDependency);
+		}
 
-		// remove all usedBy statements
-		((InferencerConnection) connection).removeInferredStatement(null, USED_BY, null);
+		if (dependencyStatements) {
+			// remove all usedBy statements
+			((InferencerConnection) connection).removeInferredStatement(null, USED_BY, null);
+		}
+		dependencies.clear();
 
 		SimpleDataset dataset = new SimpleDataset();
 		BindingSet bindingSet = new ListBindingSet(List.of(), List.of());
+		// the targets are grouped by graph and instance without sorting them, each graph is evaluated with
+		// one evaluator and all properties of an instance are evaluated together
+		Map<Resource, Map<Resource, Set<IReference>>> targetsByGraph = new LinkedHashMap<>();
 
 		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection
 				.evaluate(targetsQuery.getTupleExpr(), dataset, bindingSet, false)) {
@@ -272,13 +722,97 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 				Resource property = (Resource) bindings.getValue("property");
 				Resource targetGraph = (Resource) bindings.getValue("targetGraph");
 
-				activeDataset = getDataset(targetGraph, connection);
-				Rdf4jEvaluator evaluator = evaluators.computeIfAbsent(targetGraph, graph -> {
-					return new Rdf4jEvaluator(modelAccess, propertyCache, cacheManager);
-				});
-				evaluator.evaluateRoot(instance, valueConverter.fromRdf4j(property), Optional.empty());
+				if (parallelInferencer != null) {
+					parallelInferencer.addTarget(instance, valueConverter.fromRdf4j(property), targetGraph);
+					continue;
+				}
+				addTarget(targetsByGraph, targetGraph, instance, valueConverter.fromRdf4j(property));
 			}
 		}
+
+		if (parallelInferencer != null) {
+			parallelInferencer.run((InferencerConnection) connection);
+		} else {
+			evaluateTargets(new EvaluationContext(connection), targetsByGraph);
+		}
+	}
+
+	private static void addTarget(Map<Resource, Map<Resource, Set<IReference>>> targetsByGraph, Resource graph,
+	                              Resource instance, IReference property) {
+		targetsByGraph.computeIfAbsent(graph, g -> new LinkedHashMap<>())
+				.computeIfAbsent(instance, i -> new LinkedHashSet<>())
+				.add(property);
+	}
+
+	private void evaluateTargets(EvaluationContext ctx,
+	                             Map<Resource, Map<Resource, Set<IReference>>> targetsByGraph) {
+		TargetGroup group = new TargetGroup(ctx);
+		targetsByGraph.forEach((graph, instances) -> instances.forEach((instance, properties) -> {
+			properties.forEach(property -> group.add(graph, instance, property));
+		}));
+		group.evaluate();
+	}
+
+	/**
+	 * Evaluates the given targets on the current thread.
+	 * <p>
+	 * This is used by the workers of a {@link ParallelInferencer} that read the store and write the
+	 * inferred statements through their own <code>workerConnection</code>.
+	 */
+	void evaluateTargets(InferencerConnection workerConnection, List<ParallelInferencer.Target> targets) {
+		// the partitions are ordered by the dependencies of their resources, hence the targets are grouped here
+		Map<Resource, Map<Resource, Set<IReference>>> targetsByGraph = new LinkedHashMap<>();
+		for (ParallelInferencer.Target target : targets) {
+			addTarget(targetsByGraph, target.graph, target.instance, target.property);
+		}
+		evaluateTargets(new EvaluationContext(workerConnection), targetsByGraph);
+	}
+
+	/**
+	 * Returns the properties that are referenced by the constraint of the given target.
+	 * <p>
+	 * This is used by a {@link ParallelInferencer} to find related targets if no dependencies are known.
+	 */
+	Set<IRI> getReferencedProperties(SailConnection connection, ParallelInferencer.Target target) {
+		EvaluationContext ctx = shards.get(connection, target.graph).context(new EvaluationContext(connection));
+		return modelAccess.getReferencedProperties(ctx, target.instance, target.property).stream()
+				.map(modelAccess::mapProperty).collect(Collectors.toSet());
+	}
+
+	/**
+	 * Collects the consecutive targets of one instance within one graph and evaluates them as soon as
+	 * the next instance or graph is reached.
+	 */
+	private class TargetGroup {
+		final EvaluationContext ctx;
+		final Set<IReference> properties = new LinkedHashSet<>();
+		Resource graph;
+		Resource instance;
+		Rdf4jEvaluator evaluator;
+
+		TargetGroup(EvaluationContext ctx) {
+			this.ctx = ctx;
+		}
+
+		void add(Resource graph, Resource instance, IReference property) {
+			if (evaluator == null || !Objects.equals(graph, this.graph)) {
+				evaluate();
+				this.graph = graph;
+				evaluator = createEvaluator(ctx, graph);
+			} else if (!instance.equals(this.instance)) {
+				evaluate();
+			}
+			this.instance = instance;
+			// an instance may be a target for the same property via multiple types
+			properties.add(property);
+		}
+
+		void evaluate() {
+			for (IReference property : properties) {
+				evaluator.evaluateRoot(instance, property, Optional.empty());
+			}
+			properties.clear();
+		}
 	}
 
 	@Override
@@ -312,42 +846,267 @@ public class NumerateWebSail extends NotifyingSailWrapper {
 		this.incrementalInference = incrementalInference;
 	}
 
-	private DatasetInfo getDataset(Resource context, SailConnection connection) {
-		if (context == null) {
-			return EMPTY_DATASET;
+	public boolean getAsyncInferencing() {
+		return asyncInferencing;
+	}
+
+	/**
+	 * Enables or disables asynchronous inferencing. This must be called before the sail is initialized.
+	 * <p>
+	 * If enabled then a commit only records its changes and the inferred statements are updated afterwards
+	 * by a background thread within separate transactions. Readers that require up-to-date inferred
+	 * statements can use {@link #awaitInferencing(long, TimeUnit)}. Asynchronous inferencing is disabled by
+	 * default.
+	 *
+	 * @param asyncInferencing <code>true</code> if inferencing should be applied after commits
+	 */
+	public void setAsyncInferencing(boolean asyncInferencing) {
+		this.asyncInferencing = asyncInferencing;
+	}
+
+	public long getCoalescingWindow() {
+		return coalescingWindow;
+	}
+
+	/**
+	 * Sets the time that the asynchronous inferencing waits after a commit to merge the changes of further
+	 * commits into one inferencing run. This must be called before the sail is initialized. The default is
+	 * <code>0</code> which only merges the changes that are committed while a previous run is in progress.
+	 *
+	 * @param coalescingWindow the time in milliseconds
+	 * @see #setAsyncInferencing(boolean)
+	 */
+	public void setCoalescingWindow(long coalescingWindow) {
+		if (coalescingWindow < 0) {
+			throw new IllegalArgumentException("The coalescing window must not be negative.");
 		}
-		DatasetInfo datasetInfo = datasetCache.getIfPresent(context);
-		if (datasetInfo == null) {
-			List<Resource> contexts = new ArrayList<>();
+		this.coalescingWindow = coalescingWindow;
+	}
 
-			Set<Resource> seen = new HashSet<>();
-			Queue<Resource> queue = new LinkedList<>();
-			queue.add(context);
-			while (!queue.isEmpty()) {
-				Resource currentContext = queue.remove();
-				contexts.add(currentContext);
-				connection.getStatements(currentContext, OWL.IMPORTS, null, false, currentContext).stream()
-						.filter(stmt -> stmt.getObject() instanceof IRI)
-						.forEach(stmt -> {
-							Resource imported = (Resource) stmt.getObject();
-							if (seen.add(imported)) {
-								queue.add(imported);
-							}
-						});
-			}
-			datasetInfo = new DatasetInfo();
-			datasetInfo.context = contexts.toArray(new Resource[contexts.size()]);
-			for (Resource ctx : contexts) {
-				datasetInfo.dataset.addDefaultGraph((IRI) ctx);
-				datasetInfo.dataset.addNamedGraph((IRI) ctx);
-			}
-			datasetCache.put(context, datasetInfo);
+	public int getCoalescingMaxChanges() {
+		return coalescingMaxChanges;
+	}
+
+	/**
+	 * Sets the number of changed resources that starts the asynchronous inferencing before the coalescing
+	 * window has elapsed. This must be called before the sail is initialized. The default is
+	 * <code>10000</code>.
+	 *
+	 * @param coalescingMaxChanges the number of changed resources
+	 * @see #setCoalescingWindow(long)
+	 */
+	public void setCoalescingMaxChanges(int coalescingMaxChanges) {
+		if (coalescingMaxChanges < 1) {
+			throw new IllegalArgumentException("The maximum number of coalesced changes must be at least 1.");
 		}
-		return datasetInfo;
+		this.coalescingMaxChanges = coalescingMaxChanges;
 	}
 
-	private static class DatasetInfo {
-		Resource[] context = null;
-		SimpleDataset dataset = new SimpleDataset();
+	/**
+	 * Returns the version of the last committed change set when using asynchronous inferencing.
+	 */
+	public long getCommittedVersion() {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null ? 0 : inferencer.getCommittedVersion();
+	}
+
+	/**
+	 * Returns the version of the last change set whose inferred statements have been committed when using
+	 * asynchronous inferencing.
+	 */
+	public long getInferredVersion() {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null ? 0 : inferencer.getInferredVersion();
+	}
+
+	/**
+	 * Returns the error of the last change set whose inferencing has failed when using asynchronous
+	 * inferencing or <code>null</code> if no change set has failed. The values are recomputed by a full
+	 * inferencing run with the next committed change set.
+	 */
+	public Throwable getInferencingFailure() {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null ? null : inferencer.getFailure();
+	}
+
+	/**
+	 * Returns the version of the last change set whose inferencing has failed when using asynchronous
+	 * inferencing or <code>0</code> if no change set has failed.
+	 */
+	public long getFailedVersion() {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null ? 0 : inferencer.getFailedVersion();
+	}
+
+	@Override
+	public long getInferencingLag() {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null ? 0 : inferencer.getCommittedVersion() - inferencer.getInferredVersion();
+	}
+
+	/**
+	 * Waits until the inferred statements of all change sets that have been committed before this call are
+	 * up-to-date. Returns immediately if asynchronous inferencing is disabled.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit    the unit of the timeout
+	 * @return <code>true</code> if the inferred statements are up-to-date or <code>false</code> if the timeout
+	 * elapsed
+	 */
+	public boolean awaitInferencing(long timeout, TimeUnit unit) throws InterruptedException {
+		return awaitInferencing(getCommittedVersion(), timeout, unit);
+	}
+
+	/**
+	 * Waits until the inferred statements of the change set with the given version and of all preceding
+	 * change sets are up-to-date.
+	 *
+	 * @param version the version of a change set, e.g. as returned by {@link #getCommittedVersion()}
+	 * @param timeout the maximum time to wait
+	 * @param unit    the unit of the timeout
+	 * @return <code>true</code> if the inferred statements are up-to-date or <code>false</code> if the timeout
+	 * elapsed
+	 */
+	public boolean awaitInferencing(long version, long timeout, TimeUnit unit) throws InterruptedException {
+		AsyncInferencer inferencer = asyncInferencer;
+		return inferencer == null || inferencer.await(version, timeout, unit);
+	}
+
+	public double getChangeTolerance() {
+		return changeTolerance;
+	}
+
+	/**
+	 * Sets the relative tolerance below which a recomputed floating point value is considered to be unchanged
+	 * by incremental inferencing. Such a value is not written and is not propagated to the properties that
+	 * depend on it, hence the inferred statements may deviate from the exact results by the tolerance. The
+	 * default is <code>0</code> which only treats equal values as unchanged.
+	 *
+	 * @param changeTolerance the tolerance relative to the larger absolute value, e.g. <code>1e-9</code>
+	 */
+	public void setChangeTolerance(double changeTolerance) {
+		if (changeTolerance < 0 || Double.isNaN(changeTolerance)) {
+			throw new IllegalArgumentException("The change tolerance must not be negative.");
+		}
+		this.changeTolerance = changeTolerance;
+	}
+
+	public boolean getDependencyStatements() {
+		return dependencyStatements;
+	}
+
+	/**
+	 * Enables or disables storing the recorded dependencies as inferred <code>mathrl:usedBy</code>
+	 * statements, e.g. to query them via SPARQL. The dependencies are always maintained in a dedicated
+	 * index. Storing them as statements is disabled by default.
+	 *
+	 * @param dependencyStatements <code>true</code> if <code>usedBy</code> statements should be stored
+	 */
+	public void setDependencyStatements(boolean dependencyStatements) {
+		this.dependencyStatements = dependencyStatements;
+		if (modelAccess != null) {
+			modelAccess.setDependencyStatements(dependencyStatements);
+		}
+	}
+
+	public boolean getCompiledExpressions() {
+		return compiledExpressions;
+	}
+
+	/**
+	 * Enables or disables the evaluation of arithmetic expressions with primitive doubles. If disabled then
+	 * all expressions are interpreted. Compiled expressions are enabled by default.
+	 *
+	 * @param compiledExpressions <code>true</code> if arithmetic expressions should be compiled
+	 */
+	public void setCompiledExpressions(boolean compiledExpressions) {
+		this.compiledExpressions = compiledExpressions;
+		if (modelAccess != null) {
+			modelAccess.setCompiledExpressions(compiledExpressions);
+		}
+	}
+
+	/**
+	 * Returns the specification of the cache with the given name.
+	 *
+	 * @param cacheName the name of the cache, e.g. {@link #PROPERTY_CACHE}
+	 * @return the specification of the cache
+	 */
+	public String getCacheSpec(String cacheName) {
+		return caches.getSpec(cacheName);
+	}
+
+	/**
+	 * Sets the specification of the cache with the given name. This must be called before the sail is
+	 * initialized.
+	 * <p>
+	 * The specification uses the format of Guava's <code>CacheBuilderSpec</code>, e.g.
+	 * <code>maximumSize=100000</code> to limit the number of entries or <code>maximumWeight=50000000</code>
+	 * to limit the estimated memory consumption in bytes.
+	 *
+	 * @param cacheName the name of the cache, e.g. {@link #PROPERTY_CACHE}
+	 * @param spec      the specification or <code>null</code> to use the default
+	 */
+	public void setCacheSpec(String cacheName, String spec) {
+		caches.setSpec(cacheName, spec);
+	}
+
+	public String getCacheProvider() {
+		return caches.getProvider().getName();
+	}
+
+	/**
+	 * Selects the {@link CacheProvider} for the caches of the evaluator by its name. This must be called
+	 * before the sail is initialized.
+	 *
+	 * @param name the name of a registered provider, e.g. <code>guava</code> (the default) or
+	 *             <code>caffeine</code>
+	 */
+	public void setCacheProvider(String name) {
+		caches.setProvider(CacheProvider.forName(name));
+	}
+
+	@Override
+	public List<CacheStatistics> getCacheStatistics() {
+		return caches.getStatistics();
+	}
+
+	public boolean getJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	/**
+	 * Enables or disables the registration of a {@link NumerateWebSailMXBean} for this sail with the
+	 * platform MBean server. This must be called before the sail is initialized.
+	 *
+	 * @param jmxEnabled <code>true</code> if the MBean should be registered
+	 */
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	public int getInferencingThreads() {
+		return inferencingThreads;
+	}
+
+	/**
+	 * Sets the number of worker threads that are used for full inferencing.
+	 * A value of <code>1</code> (the default) evaluates all targets on the committing thread.
+	 *
+	 * @param inferencingThreads the number of worker threads
+	 */
+	public void setInferencingThreads(int inferencingThreads) {
+		if (inferencingThreads < 1) {
+			throw new IllegalArgumentException("The number of inferencing threads must be at least 1.");
+		}
+		this.inferencingThreads = inferencingThreads;
+	}
+
+	/**
+	 * Creates an evaluator for the shard of the given target graph with the connection of <code>ctx</code>.
+	 */
+	private Rdf4jEvaluator createEvaluator(EvaluationContext ctx, Resource graph) {
+		GraphShards.Shard shard = shards.get(ctx.connection, graph);
+		return new Rdf4jEvaluator(modelAccess, shard.context(ctx), shard, cacheManager);
 	}
 }
\ No newline at end of file
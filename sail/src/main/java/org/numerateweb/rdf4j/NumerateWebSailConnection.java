@@ -43,8 +43,11 @@ public class NumerateWebSailConnection extends InferencerConnectionWrapper
 
 	private final NumerateWebSail sail;
 
+	private boolean inferencing = false;
 	private Map<Resource, List<Resource>> changedResources = new HashMap<>();
+	private Map<Resource, Set<IRI>> changedProperties = new HashMap<>();
 	private Model changedStatements = new LinkedHashModel();
+	private boolean expressionsChanged = false;
 
 	public NumerateWebSailConnection(NumerateWebSail sail, InferencerConnection con) {
 		super(con);
@@ -63,14 +66,20 @@ public class NumerateWebSailConnection extends InferencerConnectionWrapper
 	}
 
 	void update(Statement stmt, boolean added) {
-		if (sail.inferencing) {
+		if (inferencing) {
+			// statements that are inferred by this connection
 			return;
 		}
 		changedResources.putIfAbsent(stmt.getSubject(), Collections.emptyList());
+		changedProperties.computeIfAbsent(stmt.getSubject(), s -> new HashSet<>()).add(stmt.getPredicate());
 		if (sail.CONSTRAINT_PROPERTY.equals(stmt.getPredicate()) ||
 				RDFS.SUBCLASSOF.equals(stmt.getPredicate()) || sail.ONPROPERTY.equals(stmt.getPredicate())) {
 			changedStatements.add(stmt);
 		}
+		if (Rdf4jModelAccess.isExpressionStatement(stmt)) {
+			expressionsChanged = true;
+			sail.modelAccess.expressionsChanged();
+		}
 
 		// handle changes of resource types
 		if (RDF.TYPE.equals(stmt.getPredicate())) {
@@ -112,16 +121,64 @@ public class NumerateWebSailConnection extends InferencerConnectionWrapper
 
 	@Override
 	public void commit() throws SailException {
+		AsyncInferencer asyncInferencer = sail.asyncInferencer;
+		if (asyncInferencer != null) {
+			AsyncInferencer.ChangeSet changes = changedResources.isEmpty() ? null :
+					new AsyncInferencer.ChangeSet(changedResources, changedProperties, computeAffectedClasses());
+			super.commit();
+			endExpressionChanges();
+			if (changes != null) {
+				asyncInferencer.submit(changes);
+				// the maps are now owned by the change set
+				changedResources = new HashMap<>();
+				changedProperties = new HashMap<>();
+			}
+			changedStatements.clear();
+			return;
+		}
 		doInferencing();
 		super.commit();
+		endExpressionChanges();
 		changedResources.clear();
+		changedProperties.clear();
 		changedStatements.clear();
 	}
 
+	/**
+	 * Applies the inferencing for changes that have been committed by another connection within a new
+	 * transaction.
+	 */
+	void applyInferencing(AsyncInferencer.ChangeSet changes) throws SailException {
+		begin();
+		try {
+			inferencing = true;
+			sail.reevaluate(this, changes.changedResources, changes.changedProperties, changes.changedClasses);
+		} catch (RuntimeException | Error e) {
+			rollback();
+			throw e;
+		} finally {
+			inferencing = false;
+		}
+		super.commit();
+	}
+
+	/**
+	 * Expressions that have been parsed by other connections before the end of this transaction may still
+	 * reflect the previous statements, as may those parsed by this connection after a rollback.
+	 */
+	private void endExpressionChanges() {
+		if (expressionsChanged) {
+			expressionsChanged = false;
+			sail.modelAccess.expressionsChanged();
+		}
+	}
+
 	@Override
 	public void rollback() throws SailException {
 		super.rollback();
+		endExpressionChanges();
 		changedResources.clear();
+		changedProperties.clear();
 		changedStatements.clear();
 	}
 
@@ -198,6 +255,11 @@ public class NumerateWebSailConnection extends InferencerConnectionWrapper
 	}
 
 	protected void doInferencing() throws SailException {
-		sail.reevaluate(this, changedResources, computeAffectedClasses());
+		try {
+			inferencing = true;
+			sail.reevaluate(this, changedResources, changedProperties, computeAffectedClasses());
+		} finally {
+			inferencing = false;
+		}
 	}
 }
\ No newline at end of file
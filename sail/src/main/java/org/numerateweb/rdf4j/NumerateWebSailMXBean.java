@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import java.util.List;
+
+/**
+ * Management interface of a {@link NumerateWebSail} that is registered with the platform MBean server
+ * if JMX is enabled.
+ */
+public interface NumerateWebSailMXBean {
+	/**
+	 * Returns the statistics of all caches used by the sail.
+	 */
+	List<CacheStatistics> getCacheStatistics();
+
+	/**
+	 * Returns the number of committed change sets whose inferred statements have not been updated yet
+	 * when using asynchronous inferencing.
+	 */
+	long getInferencingLag();
+}
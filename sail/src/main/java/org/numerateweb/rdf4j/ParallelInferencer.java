@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.commons.util.Pair;
+import net.enilink.komma.core.IReference;
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.IterationWrapper;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnectionWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates the targets of a full inferencing run on a pool of worker threads.
+ * <p>
+ * The targets are partitioned along the connected components of the dependencies to keep related
+ * computations within the same worker. If no dependencies are known, e.g. for the first run, the targets
+ * are connected by the statements of the properties that their constraints refer to.
+ * <p>
+ * The workers share the connection of the current transaction as only it sees the uncommitted changes.
+ * They read from it concurrently while holding a read lock, results are streamed and the lock is held until
+ * the iteration is closed. The workers do not write to the store themselves. Their changes of inferred
+ * statements are queued and applied by the calling thread while no worker is reading.
+ */
+class ParallelInferencer {
+	static private final Logger logger = LoggerFactory.getLogger(ParallelInferencer.class);
+
+	/**
+	 * Number of partitions per worker thread, used to balance differently sized components.
+	 */
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private static final AtomicInteger threadNumber = new AtomicInteger();
+
+	private final NumerateWebSail sail;
+	private final int threads;
+	private final Map<Resource, Resource> components = new HashMap<>();
+	private final List<Target> targets = new ArrayList<>();
+	private final Queue<Consumer<InferencerConnection>> inferred = new ConcurrentLinkedQueue<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	ParallelInferencer(NumerateWebSail sail, int threads) {
+		this.sail = sail;
+		this.threads = threads;
+	}
+
+	/**
+	 * Records that the values of <code>a</code> and <code>b</code> depend on each other and hence
+	 * should be evaluated within the same partition.
+	 */
+	void addDependency(Object a, Object b) {
+		Resource rootA = findComponent((Resource) a);
+		Resource rootB = findComponent((Resource) b);
+		if (!rootA.equals(rootB)) {
+			components.put(rootA, rootB);
+		}
+	}
+
+	void addTarget(Resource instance, IReference property, Resource targetGraph) {
+		targets.add(new Target(instance, property, targetGraph));
+	}
+
+	private Resource findComponent(Resource resource) {
+		Resource root = resource;
+		Resource parent;
+		while ((parent = components.get(root)) != null) {
+			root = parent;
+		}
+		// compress the path to the root
+		while (!resource.equals(root)) {
+			Resource next = components.put(resource, root);
+			resource = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Connects targets that are linked by statements, e.g. an aggregate and its parts, as the values of
+	 * targets usually depend on the resources they refer to. Only the properties that are referenced by
+	 * the constraints of the targets are read.
+	 */
+	private void linkTargets(InferencerConnection connection) {
+		Set<Resource> instances = new HashSet<>();
+		for (Target target : targets) {
+			instances.add(target.instance);
+		}
+		Set<Pair<Resource, IRI>> read = new HashSet<>();
+		for (Target target : targets) {
+			for (IRI property : sail.getReferencedProperties(connection, target)) {
+				if (!read.add(new Pair<>(target.instance, property))) {
+					continue;
+				}
+				try (CloseableIteration<? extends Statement, SailException> stmts =
+						     connection.getStatements(target.instance, property, null, false)) {
+					while (stmts.hasNext()) {
+						Value object = stmts.next().getObject();
+						if (instances.contains(object)) {
+							addDependency(target.instance, object);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private List<List<Target>> partition() {
+		List<List<Target>> partitions = new ArrayList<>(threads * PARTITIONS_PER_THREAD);
+		for (int i = 0; i < threads * PARTITIONS_PER_THREAD; i++) {
+			partitions.add(new ArrayList<>());
+		}
+		for (Target target : targets) {
+			int partition = Math.floorMod(findComponent(target.instance).hashCode(), partitions.size());
+			partitions.get(partition).add(target);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Evaluates all targets and applies the inferred changes via the given <code>connection</code>.
+	 */
+	void run(InferencerConnection connection) throws SailException {
+		InferencerConnection baseConnection = (InferencerConnection) new EvaluationContext(connection)
+				.baseConnection();
+		if (components.isEmpty()) {
+			linkTargets(baseConnection);
+		}
+		List<List<Target>> partitions = partition();
+		InferencerConnection workerBase = new LockingConnection(baseConnection, lock);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "numerateweb-inferencer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (List<Target> partition : partitions) {
+				if (!partition.isEmpty()) {
+					futures.add(executor.submit(() -> {
+						sail.evaluateTargets(new QueueingConnection(workerBase, inferred), partition);
+					}));
+				}
+			}
+			logger.info("Evaluating {} partitions with {} threads", futures.size(), threads);
+			for (Future<?> future : futures) {
+				while (true) {
+					try {
+						future.get(10, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException e) {
+						// write statements while the workers are still running
+						applyInferred(connection, false);
+					}
+				}
+			}
+			applyInferred(connection, true);
+		} catch (ExecutionException e) {
+			throw new SailException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SailException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Applies the queued changes if no worker is reading.
+	 *
+	 * @param wait <code>true</code> if the changes should be applied after the current reads are finished
+	 */
+	private void applyInferred(InferencerConnection connection, boolean wait) {
+		if (inferred.isEmpty()) {
+			return;
+		}
+		Lock writeLock = lock.writeLock();
+		// a waiting writer would block new reads of workers that already read, e.g. via open iterations
+		if (wait) {
+			writeLock.lock();
+		} else if (!writeLock.tryLock()) {
+			return;
+		}
+		try {
+			Consumer<InferencerConnection> change;
+			while ((change = inferred.poll()) != null) {
+				change.accept(connection);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	static class Target {
+		final Resource instance;
+		final IReference property;
+		final Resource graph;
+
+		Target(Resource instance, IReference property, Resource graph) {
+			this.instance = instance;
+			this.property = property;
+			this.graph = graph;
+		}
+	}
+
+	/**
+	 * Connection of a worker that reads from the shared base connection and queues all changes of inferred
+	 * statements.
+	 */
+	static class QueueingConnection extends InferencerConnectionWrapper {
+		final Queue<Consumer<InferencerConnection>> queue;
+
+		QueueingConnection(InferencerConnection baseConnection, Queue<Consumer<InferencerConnection>> queue) {
+			super(baseConnection);
+			this.queue = queue;
+		}
+
+		@Override
+		public boolean addInferredStatement(Resource subj, IRI pred, Value obj, Resource... contexts)
+				throws SailException {
+			queue.add(connection -> connection.addInferredStatement(subj, pred, obj, contexts));
+			return true;
+		}
+
+		@Override
+		public boolean removeInferredStatement(Resource subj, IRI pred, Value obj, Resource... contexts)
+				throws SailException {
+			queue.add(connection -> connection.removeInferredStatement(subj, pred, obj, contexts));
+			return true;
+		}
+	}
+
+	/**
+	 * Guards the reads of the workers on the shared base connection with the read lock. Iterations hold the
+	 * lock until they are closed.
+	 */
+	static class LockingConnection extends InferencerConnectionWrapper {
+		final Lock readLock;
+
+		LockingConnection(InferencerConnection baseConnection, ReadWriteLock lock) {
+			super(baseConnection);
+			this.readLock = lock.readLock();
+		}
+
+		private <E, X extends Exception> CloseableIteration<E, X> locked(
+				Callable<? extends CloseableIteration<? extends E, ? extends X>> read) throws SailException {
+			readLock.lock();
+			try {
+				return new ReadLockedIteration<>(read.call(), readLock);
+			} catch (RuntimeException | Error e) {
+				readLock.unlock();
+				throw e;
+			} catch (Exception e) {
+				readLock.unlock();
+				throw new SailException(e);
+			}
+		}
+
+		@Override
+		public CloseableIteration<? extends Statement, SailException> getStatements(Resource subj, IRI pred,
+				Value obj, boolean includeInferred, Resource... contexts) throws SailException {
+			return locked(() -> super.getStatements(subj, pred, obj, includeInferred, contexts));
+		}
+
+		@Override
+		public boolean hasStatement(Resource subj, IRI pred, Value obj, boolean includeInferred,
+		                            Resource... contexts) throws SailException {
+			readLock.lock();
+			try {
+				return super.hasStatement(subj, pred, obj, includeInferred, contexts);
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		@Override
+		public CloseableIteration<? extends BindingSet, QueryEvaluationException> evaluate(TupleExpr tupleExpr,
+				Dataset dataset, BindingSet bindings, boolean includeInferred) throws SailException {
+			return locked(() -> super.evaluate(tupleExpr, dataset, bindings, includeInferred));
+		}
+
+		@Override
+		public CloseableIteration<? extends Resource, SailException> getContextIDs() throws SailException {
+			return locked(super::getContextIDs);
+		}
+
+		@Override
+		public CloseableIteration<? extends Namespace, SailException> getNamespaces() throws SailException {
+			return locked(super::getNamespaces);
+		}
+
+		@Override
+		public String getNamespace(String prefix) throws SailException {
+			readLock.lock();
+			try {
+				return super.getNamespace(prefix);
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		@Override
+		public long size(Resource... contexts) throws SailException {
+			readLock.lock();
+			try {
+				return super.size(contexts);
+			} finally {
+				readLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Releases the read lock when the wrapped iteration is closed or exhausted.
+	 */
+	static class ReadLockedIteration<E, X extends Exception> extends IterationWrapper<E, X> {
+		final Lock readLock;
+
+		ReadLockedIteration(CloseableIteration<? extends E, ? extends X> iteration, Lock readLock) {
+			super(iteration);
+			this.readLock = readLock;
+		}
+
+		@Override
+		protected void handleClose() throws X {
+			try {
+				super.handleClose();
+			} finally {
+				readLock.unlock();
+			}
+		}
+	}
+}
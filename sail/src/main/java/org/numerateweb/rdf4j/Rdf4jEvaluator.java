@@ -15,7 +15,6 @@
  */
 package org.numerateweb.rdf4j;
 
-import com.google.common.cache.Cache;
 import net.enilink.commons.iterator.IExtendedIterator;
 import net.enilink.commons.util.Pair;
 import net.enilink.komma.core.IReference;
@@ -31,17 +30,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 
 class Rdf4jEvaluator extends SimpleEvaluator {
 
 	protected final static Logger logger = LoggerFactory.getLogger(Rdf4jEvaluator.class);
 	protected Map<Pair<Object, IReference>, List<Object>> propertiesToManagedInstances = new HashMap<>();
-	protected final Cache<Object, CachedEntity> cache;
+	protected final GraphShards.Shard shard;
+	protected final Rdf4jModelAccess rdf4jModelAccess;
+	protected final EvaluationContext context;
 
-	public Rdf4jEvaluator(Rdf4jModelAccess modelAccess, Cache<Object, CachedEntity> cache, CacheManager cacheManager) {
-		super(modelAccess, cacheManager);
-		this.cache = cache;
+	public Rdf4jEvaluator(Rdf4jModelAccess modelAccess, EvaluationContext context, GraphShards.Shard shard,
+	                      CacheManager cacheManager) {
+		super(modelAccess.forContext(context), cacheManager);
+		this.rdf4jModelAccess = modelAccess;
+		this.context = context;
+		this.shard = shard;
 	}
 
 	@Override
@@ -49,9 +52,9 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 		return new AbstractCache<>() {
 			@Override
 			protected CacheResult<Object> getInternal(Pair<Object, IReference> key) {
-				CachedEntity entity = cache.getIfPresent(key.getFirst());
+				CachedEntity entity = shard.getEntity(key.getFirst());
 				if (entity != null) {
-					Resource[] readContexts = ((Rdf4jModelAccess) modelAccess).readContext();
+					Resource[] readContexts = context.context;
 					if (readContexts.length > 0) {
 						for (Resource ctx : readContexts) {
 							Object value = entity.get(ctx, key.getSecond());
@@ -71,24 +74,19 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 
 			@Override
 			public void put(Pair<Object, IReference> key, Object o) {
-				try {
-					CachedEntity entity = cache.get(key.getFirst(), CachedEntity::new);
-					Resource[] writeCtx = ((Rdf4jModelAccess) modelAccess).writeContext((Resource) key.getFirst());
-					if (writeCtx.length > 0) {
-						entity.put(writeCtx[0], key.getSecond(), o);
-					} else {
-						entity.put(null, key.getSecond(), o);
-					}
-				} catch (ExecutionException e) {
-					throw new RuntimeException(e);
+				CachedEntity entity = shard.getOrCreateEntity(key.getFirst());
+				Resource[] writeCtx = rdf4jModelAccess.writeContext(context, (Resource) key.getFirst());
+				boolean grown = entity.put(writeCtx.length > 0 ? writeCtx[0] : null, key.getSecond(), o);
+				if (grown) {
+					shard.reweigh(key.getFirst(), entity);
 				}
 			}
 
 			@Override
 			public void remove(Pair<Object, IReference> key) {
-				CachedEntity entity = cache.getIfPresent(key.getFirst());
+				CachedEntity entity = shard.getEntity(key.getFirst());
 				if (entity != null) {
-					Resource[] writeCtx = ((Rdf4jModelAccess) modelAccess).writeContext((Resource) key.getFirst());
+					Resource[] writeCtx = rdf4jModelAccess.writeContext(context, (Resource) key.getFirst());
 					if (writeCtx.length > 0) {
 						entity.remove(writeCtx[0], key.getSecond());
 					} else {
@@ -115,7 +113,7 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 	@Override
 	protected void recordDependency(Pair<Object, IReference> from, Pair<Object, IReference> to) {
 		logger.trace("adding dependency {} -> {}", from, to);
-		((Rdf4jModelAccess) modelAccess).addDependency(from, to);
+		rdf4jModelAccess.addDependency(context, from, to);
 	}
 
 	/**
@@ -139,6 +137,12 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 	public Result evaluate(Object subject, IReference property, Optional<IReference> restriction) {
 		// check if already in cache
 		boolean cached = (null != valueCache.get(new Pair<>(subject, property)));
+		if (!cached && restriction.isEmpty()) {
+			Result result = evaluateCompiled(subject, property);
+			if (result != null) {
+				return result;
+			}
+		}
 		// check if the property should be calculated for this subject
 		/*if (dontCalculateValue) {
 			Object value = getPropertyValue(subject, property);
@@ -168,7 +172,7 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 				return result(singleResult);
 			} else {
 				logger.trace("setting ({}, {}) to value={}", subject, property, results);
-				((Rdf4jModelAccess) modelAccess).setPropertyValue(subject, property, results);
+				rdf4jModelAccess.setPropertyValue(context, subject, property, results);
 				return result(result.isSingle() ? singleResult : results);
 			}
 		} catch (NoSuchElementException nse) {
@@ -176,6 +180,64 @@ class Rdf4jEvaluator extends SimpleEvaluator {
 		}
 	}
 
+	/**
+	 * Evaluates the constraint of a property with its compiled expression.
+	 *
+	 * @return the result or <code>null</code> if the expression has to be interpreted
+	 */
+	protected Result evaluateCompiled(Object subject, IReference property) {
+		CompiledExpression expression = rdf4jModelAccess.getCompiledExpression(context, subject, property);
+		if (expression == null) {
+			return null;
+		}
+		Pair<Object, IReference> key = new Pair<>(subject, property);
+		Path<Pair<Object, IReference>> currentPath = path.get();
+		if (currentPath.contains(key)) {
+			// let the interpreter report the cycle
+			return null;
+		}
+		Pair<Object, IReference> dependent = currentPath.peekLast();
+		if (dependent != null) {
+			recordDependency(dependent, key);
+		}
+		double value;
+		// whether the result is a floating point number when computed by the interpreter
+		boolean[] floatingPoint = {expression.isFloatingPoint()};
+		currentPath.addLast(key);
+		try {
+			value = expression.evaluate(subject, (s, p) -> numericValue(s, p, floatingPoint));
+		} catch (CompiledExpression.UnsupportedValueException e) {
+			return null;
+		} finally {
+			currentPath.removeLast();
+		}
+		if (!floatingPoint[0]) {
+			// let the interpreter compute the exact integer result
+			return null;
+		}
+		logger.trace("setting ({}, {}) to compiled value={}", subject, property, value);
+		valueCache.put(key, value);
+		rdf4jModelAccess.setPropertyValue(context, subject, property, List.of(value));
+		return result(value);
+	}
+
+	private double numericValue(Object subject, IReference property, boolean[] floatingPoint) {
+		List<Object> values;
+		try {
+			values = evaluate(subject, property, Optional.empty()).toList();
+		} catch (NoSuchElementException nse) {
+			throw CompiledExpression.UnsupportedValueException.INSTANCE;
+		}
+		if (values.size() != 1) {
+			throw CompiledExpression.UnsupportedValueException.INSTANCE;
+		}
+		Object value = values.get(0);
+		if (value instanceof Double || value instanceof Float) {
+			floatingPoint[0] = true;
+		}
+		return CompiledExpression.toDouble(value);
+	}
+
 	@Override
 	protected Object getPropertyValue(Object subject, IReference property) {
 		try (IExtendedIterator<?> it = modelAccess.getPropertyValues(subject, property, Optional.empty())) {
@@ -16,9 +16,10 @@
 package org.numerateweb.rdf4j;
 
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
 import com.google.inject.TypeLiteral;
 import net.enilink.commons.iterator.IExtendedIterator;
+import net.enilink.commons.iterator.NiceIterator;
 import net.enilink.commons.iterator.WrappedIterator;
 import net.enilink.commons.util.Pair;
 import net.enilink.komma.core.*;
@@ -29,18 +30,21 @@ import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.base.CoreDatatype;
 import org.eclipse.rdf4j.model.vocabulary.*;
 import org.eclipse.rdf4j.query.BindingSet;
-import org.eclipse.rdf4j.query.Dataset;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.BindingSetAssignment;
+import org.eclipse.rdf4j.query.algebra.Join;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.impl.EmptyBindingSet;
 import org.eclipse.rdf4j.query.impl.ListBindingSet;
-import org.eclipse.rdf4j.query.impl.SimpleDataset;
 import org.eclipse.rdf4j.query.parser.ParsedQuery;
 import org.eclipse.rdf4j.query.parser.QueryParserUtil;
 import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.SailException;
-import org.eclipse.rdf4j.sail.helpers.SailConnectionWrapper;
 import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
 import org.numerateweb.math.model.OMObject;
 import org.numerateweb.math.model.OMObjectBuilder;
@@ -49,7 +53,6 @@ import org.numerateweb.math.popcorn.PopcornParser;
 import org.numerateweb.math.rdf.NWMathGraphParser;
 import org.numerateweb.math.rdf.rules.NWRULES;
 import org.numerateweb.math.reasoner.*;
-import org.numerateweb.math.util.SparqlUtils;
 import org.parboiled.Parboiled;
 import org.parboiled.errors.ErrorUtils;
 import org.parboiled.parserunners.ReportingParseRunner;
@@ -58,15 +61,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
-class Rdf4jModelAccess implements IModelAccess {
+/**
+ * Access to the constraints and property values of the underlying store.
+ * <p>
+ * This object is shared by all evaluations. The connection and the readable graphs of an evaluation are
+ * passed explicitly as {@link EvaluationContext}. An {@link IModelAccess} for a specific context is
+ * created with {@link #forContext(EvaluationContext)}.
+ */
+class Rdf4jModelAccess {
+	static final String MATH_NAMESPACE = "http://numerateweb.org/vocab/math#";
 	protected static final String MATH_OBJECT_QUERY = new StringBuilder()
 			.append("prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> ")
-			.append("prefix math: <http://numerateweb.org/vocab/math#> ")
+			.append("prefix math: <" + MATH_NAMESPACE + "> ")
 			.append("construct {")
 			.append("?s ?p ?o . ")
 			.append("} where {")
@@ -80,8 +91,6 @@ class Rdf4jModelAccess implements IModelAccess {
 	static final String PREFIX = "PREFIX rdf: <" + RDF.NAMESPACE
 			+ "> PREFIX rdfs: <" + RDFS.NAMESPACE + "> PREFIX owl: <"
 			+ OWL.NAMESPACE + "> PREFIX sh: <" + SHACL.NAMESPACE + "> ";
-	protected static final ParsedQuery directSuperClassesQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL,
-			SELECT_DIRECT_SUPERCLASSES(false), null);
 	/**
 	 * Comparator to sort resources according to their "semantic" level.
 	 */
@@ -112,15 +121,7 @@ class Rdf4jModelAccess implements IModelAccess {
 			return defaultNamespaces.length + 1;
 		}
 	};
-	private static final Dataset ALL_GRAPHS = new SimpleDataset();
 	static private final Logger logger = LoggerFactory.getLogger(Rdf4jModelAccess.class);
-	private static final String CONSTRAINT_QUERY = PREFIX + SparqlUtils.prefix("mathrl", NWRULES.NAMESPACE)
-			+ "SELECT distinct ?constraint ?property { " //
-			+ "{ graph ?g { ?c mathrl:constraint ?constraint } } union { ?c mathrl:constraint ?constraint filter (!bound(?g)) } "
-			+ "?constraint mathrl:onProperty ?property " //
-			+ "}";
-	protected static final ParsedQuery constraintQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, CONSTRAINT_QUERY,
-			null);
 	private static final String SELECT_INSTANCES = PREFIX + "SELECT DISTINCT ?instance { ?instance a ?class . }";
 	protected static final ParsedQuery instancesQuery = QueryParserUtil.parseQuery(QueryLanguage.SPARQL, SELECT_INSTANCES,
 			null);
@@ -128,51 +129,131 @@ class Rdf4jModelAccess implements IModelAccess {
 			"SELECT DISTINCT ?prefix ?namespace WHERE { ?resource sh:prefixes/owl:imports*/sh:declare [ sh:prefix ?prefix ; sh:namespace ?namespace ] }", null);
 	protected final ValueFactory valueFactory;
 	private final IRI USED_BY;
-	private final Supplier<SailConnection> connection;
-	private final Supplier<Resource[]> context;
-	private final Supplier<Dataset> dataset;
 	private final RDF4JValueConverter valueConverter;
 	private final LiteralConverter literalConverter;
-	private final Map<Resource, List<ConstraintInfo>> classToConstraints = new HashMap<>();
-	private final Map<IReference, IRI> propertyCache = new HashMap<>();
-	private Cache<Pair<Resource, Resource>, Boolean> dependencyCache = CacheBuilder.newBuilder().maximumSize(100000).build();
+	private final DependencyGraph dependencies;
+	private final Map<Resource, ClassConstraints> classToConstraints = new ConcurrentHashMap<>();
+	/**
+	 * Incremented by each invalidation, constraints that have been loaded before are not published.
+	 */
+	private final AtomicLong classInfoVersion = new AtomicLong();
+	private final ConstraintIndex constraintIndex = new ConstraintIndex();
+	private final Map<ConstraintIndex.Declaration, ConstraintInfo> constraintInfos = new ConcurrentHashMap<>();
+	private final Map<IReference, IRI> propertyCache = new ConcurrentHashMap<>();
+	private volatile boolean dependencyStatements = false;
+	private volatile boolean compiledExpressions = true;
+	private final Cache<Pair<Resource, Resource>, Boolean> dependencyCache;
 	private ICache<Resource, ResourceInfo> resourceInfos;
-	private Cache<String, OMObject> expressionCache = CacheBuilder.newBuilder().maximumSize(10000).build();
+	private final Cache<HashCode, OMObject> expressionCache;
+	/**
+	 * The RDF expressions that have been parsed since their statements have been changed the last time,
+	 * keyed by the expression resource and the readable graphs.
+	 */
+	private final Map<Pair<Resource, Set<Resource>>, ParsedExpression> parsedExpressions = new ConcurrentHashMap<>();
+	private final AtomicLong expressionVersion = new AtomicLong();
+	private final ExpressionStore expressionStore;
+	/**
+	 * Converted literals that are not directly mapped to primitive values. RDF4J literals are equal
+	 * if their labels, datatypes and languages are equal.
+	 */
+	private final Cache<org.eclipse.rdf4j.model.Literal, Object> literalCache;
 
 	public Rdf4jModelAccess(LiteralConverter literalConverter, ValueFactory valueFactory,
-	                        Supplier<SailConnection> connection, Supplier<Resource[]> context,
-	                        Supplier<Dataset> dataset, CacheManager cacheManager) {
+	                        CacheManager cacheManager, DependencyGraph dependencies, SailCaches caches,
+	                        ExpressionStore expressionStore) {
 		this.literalConverter = literalConverter;
 		this.valueFactory = valueFactory;
-		this.connection = connection;
-		this.context = context;
-		this.dataset = dataset;
+		this.dependencies = dependencies;
 		this.valueConverter = new RDF4JValueConverter(valueFactory);
 		this.resourceInfos = cacheManager.get(new TypeLiteral<>() {
 		});
 		this.USED_BY = valueFactory.createIRI(NWRULES.NAMESPACE + "usedBy");
+		this.dependencyCache = caches.build(NumerateWebSail.DEPENDENCY_CACHE,
+				(key, value) -> SailCaches.weigh(key) + SailCaches.weigh(value));
+		this.expressionStore = expressionStore;
+		// the size of a parsed expression is estimated from the length of its encoding
+		this.expressionCache = caches.build(NumerateWebSail.EXPRESSION_CACHE,
+				(hash, mathObj) -> 64 + 4 * expressionStore.encodedSize(hash));
+		this.literalCache = caches.build(NumerateWebSail.LITERAL_CACHE,
+				(literal, object) -> 96 + 4 * literal.getLabel().length());
+	}
+
+	/**
+	 * Returns a model access for the evaluator that is bound to the given context.
+	 */
+	IModelAccess forContext(EvaluationContext ctx) {
+		return new IModelAccess() {
+			@Override
+			public ResultSpec<OMObject> getExpressionSpec(Object subject, IReference property) {
+				return Rdf4jModelAccess.this.getExpressionSpec(ctx, subject, property);
+			}
+
+			@Override
+			public IExtendedIterator<?> getInstances(IReference clazz) {
+				return Rdf4jModelAccess.this.getInstances(ctx, clazz);
+			}
+
+			@Override
+			public IReference createInstance(Object scope, URI property, URI uri, IReference clazz,
+			                                 Map<URI, Object> args) {
+				return Rdf4jModelAccess.this.createInstance(ctx, scope, property, uri, clazz, args);
+			}
+
+			@Override
+			public IExtendedIterator<?> getPropertyValues(Object subject, IReference property,
+			                                              Optional<IReference> restriction) {
+				return Rdf4jModelAccess.this.getPropertyValues(ctx, subject, property, restriction);
+			}
+		};
+	}
+
+	/**
+	 * Returns <code>true</code> if the statement may be part of an RDF expression.
+	 */
+	static boolean isExpressionStatement(org.eclipse.rdf4j.model.Statement stmt) {
+		IRI pred = stmt.getPredicate();
+		return MATH_NAMESPACE.equals(pred.getNamespace()) || RDF.FIRST.equals(pred) || RDF.REST.equals(pred)
+				|| RDF.TYPE.equals(pred) && stmt.getObject().isIRI()
+				&& MATH_NAMESPACE.equals(((IRI) stmt.getObject()).getNamespace());
 	}
 
-	private static final String SELECT_DIRECT_SUPERCLASSES(boolean named) {
-		return PREFIX
-				+ "SELECT DISTINCT ?superClass { "
-				+ "?subClass rdfs:subClassOf ?superClass . "
-				+ "FILTER NOT EXISTS { ?superClass a owl:Restriction } "
-				+ "FILTER NOT EXISTS {"
-				+ "?subClass rdfs:subClassOf ?otherSuperClass . "
-				+ "?otherSuperClass rdfs:subClassOf ?superClass . "
-				+ "FILTER (?subClass != ?otherSuperClass && ?superClass != ?otherSuperClass"
-				+ (named ? " && isIRI(?otherSuperClass)" : "") + ")"
-				+ "} FILTER (?subClass != ?superClass"
-				+ (named ? "&& isIRI(?superClass)" : "")
-				+ ") } ORDER BY ?superClass";
+	/**
+	 * Notifies this model access that statements of RDF expressions have been changed. The parsed RDF
+	 * expressions are then read again from the store.
+	 */
+	void expressionsChanged() {
+		expressionVersion.incrementAndGet();
+		parsedExpressions.clear();
+	}
+
+	/**
+	 * Parses an expression that is represented as RDF graph.
+	 * <p>
+	 * The statements of the expression are only read if they may have been changed since the expression
+	 * has been parsed the last time, see {@link #expressionsChanged()}.
+	 */
+	OMObject parseExpression(EvaluationContext ctx, Resource mathObj) {
+		Pair<Resource, Set<Resource>> key = new Pair<>(mathObj, ctx.readable);
+		long version = expressionVersion.get();
+		ParsedExpression parsed = parsedExpressions.get(key);
+		if (parsed != null && parsed.version == version) {
+			return parsed.expression;
+		}
+		OMObject expression = readExpression(ctx, mathObj);
+		// the version has been changed if the statements were modified in the meantime
+		if (expressionVersion.get() == version) {
+			parsedExpressions.put(key, new ParsedExpression(expression, version));
+		}
+		return expression;
 	}
 
-	OMObject parseExpression(Resource mathObj) {
+	private OMObject readExpression(EvaluationContext ctx, Resource mathObj) {
 		BindingSet bindingSet = new ListBindingSet(List.of("mathObj"), List.of(mathObj));
 		IGraph statements = new LinkedHashGraph();
-		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection
-				.get().evaluate(mathObjectQuery.getTupleExpr(), dataset.get(), bindingSet, false)) {
+		// the outgoing edges identify the contents of the expression
+		Map<Value, List<Value[]>> edges = new HashMap<>();
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = ctx.connection
+				.evaluate(mathObjectQuery.getTupleExpr(), ctx.dataset, bindingSet, false)) {
 			while (bindingsIter.hasNext()) {
 				BindingSet bindings = bindingsIter.next();
 				Value subj = bindings.getValue("subject");
@@ -181,23 +262,85 @@ class Rdf4jModelAccess implements IModelAccess {
 				if (subj instanceof Resource && pred instanceof IRI && obj != null) {
 					statements.add(new Statement(valueConverter.fromRdf4j((Resource) subj),
 							valueConverter.fromRdf4j((IRI) pred), valueConverter.fromRdf4j(obj)));
+					edges.computeIfAbsent(subj, s -> new ArrayList<>()).add(new Value[]{pred, obj});
 				}
 			}
 		}
-		NWMathGraphParser parser = new NWMathGraphParser(statements, INamespaces.empty());
-		OMObject parsedObj = parser.parse(valueConverter.fromRdf4j(mathObj), new OMObjectBuilder());
+		StringBuilder content = new StringBuilder();
+		appendCanonical(content, mathObj, edges, new HashMap<>());
+		HashCode hash = ExpressionStore.hash(content.toString(), Collections.emptyMap());
+		OMObject parsedObj = expressionStore.get(hash);
+		if (parsedObj == null) {
+			NWMathGraphParser parser = new NWMathGraphParser(statements, INamespaces.empty());
+			parsedObj = parser.parse(valueConverter.fromRdf4j(mathObj), new OMObjectBuilder());
+			if (parsedObj != null) {
+				expressionStore.put(hash, parsedObj);
+			}
+		}
 		return parsedObj;
 	}
 
-	protected ResourceInfo getResourceInfo(Resource resource) {
+	/**
+	 * Serializes the statements that are reachable from a node in a canonical form that does not depend on
+	 * the labels of blank nodes. Blank nodes are replaced by the position of their first visit and the
+	 * outgoing statements of each node are ordered by their predicates and objects. Blank nodes with the same
+	 * predicate are visited in the order of the store.
+	 */
+	private void appendCanonical(StringBuilder sb, Value node, Map<Value, List<Value[]>> edges,
+	                             Map<Value, Integer> visited) {
+		Integer position = visited.get(node);
+		if (position != null) {
+			appendTerm(sb, node, position);
+			return;
+		}
+		position = visited.size();
+		visited.put(node, position);
+		appendTerm(sb, node, position);
+		List<Value[]> out = edges.getOrDefault(node, Collections.emptyList());
+		out.sort(Comparator.<Value[], String>comparing(edge -> edge[0].stringValue())
+				.thenComparing(edge -> edge[1].isBNode() ? "" : termKey(edge[1])));
+		sb.append('[');
+		for (Value[] edge : out) {
+			appendTerm(sb, edge[0], 0);
+			if (edge[1].isResource()) {
+				appendCanonical(sb, edge[1], edges, visited);
+			} else {
+				appendTerm(sb, edge[1], 0);
+			}
+			sb.append(';');
+		}
+		sb.append(']');
+	}
+
+	private void appendTerm(StringBuilder sb, Value term, int position) {
+		if (term.isBNode()) {
+			sb.append("_:").append(position);
+		} else {
+			sb.append(termKey(term));
+		}
+	}
+
+	/**
+	 * Returns an unambiguous string for an IRI or a literal.
+	 */
+	private String termKey(Value term) {
+		if (term.isLiteral()) {
+			org.eclipse.rdf4j.model.Literal literal = (org.eclipse.rdf4j.model.Literal) term;
+			String label = literal.getLabel();
+			return "\"" + label.length() + ":" + label + "^" + literal.getDatatype().stringValue()
+					+ literal.getLanguage().map(lang -> "@" + lang).orElse("");
+		}
+		return "<" + term.stringValue() + ">";
+	}
+
+	protected ResourceInfo getResourceInfo(EvaluationContext ctx, Resource resource) {
 		CacheResult<ResourceInfo> result = resourceInfos.get(resource);
 		if (result != null) {
 			return result.value;
 		}
 		ResourceInfo info = new ResourceInfo();
 		Set<Resource> seenContexts = new HashSet<>();
-		((SailConnectionWrapper) connection.get()).getWrappedConnection().
-				getStatements(resource, RDF.TYPE, null, false)
+		ctx.baseConnection().getStatements(resource, RDF.TYPE, null, false)
 				.stream()
 				.filter(stmt -> stmt.getObject() instanceof Resource)
 				.forEach(stmt -> {
@@ -211,42 +354,102 @@ class Rdf4jModelAccess implements IModelAccess {
 		return info;
 	}
 
-	protected List<Resource> getDirectSuperClasses(Resource clazz) {
-		Set<Resource> classes = new HashSet<>();
-		BindingSet bindingSet = new ListBindingSet(List.of("subClass"), List.of(clazz));
-		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection.get()
-				.evaluate(directSuperClassesQuery.getTupleExpr(), ALL_GRAPHS, bindingSet, false)) {
+	/**
+	 * Loads the {@link ResourceInfo}s of all given resources that are not yet cached with one query.
+	 *
+	 * @param resources the resources whose types and contexts should be loaded
+	 */
+	void loadResourceInfos(EvaluationContext ctx, Collection<? extends Resource> resources) {
+		Map<Resource, ResourceInfo> infos = new HashMap<>();
+		List<BindingSet> bindingSets = new ArrayList<>();
+		for (Resource resource : resources) {
+			if (!infos.containsKey(resource) && resourceInfos.get(resource) == null) {
+				infos.put(resource, new ResourceInfo());
+				bindingSets.add(new ListBindingSet(List.of("s"), List.of(resource)));
+			}
+		}
+		if (infos.isEmpty()) {
+			return;
+		}
+		if (infos.size() == 1) {
+			getResourceInfo(ctx, infos.keySet().iterator().next());
+			return;
+		}
+
+		BindingSetAssignment subjects = new BindingSetAssignment();
+		subjects.setBindingSets(bindingSets);
+		// the context variable is only bound for statements in named graphs
+		TupleExpr expr = new Join(subjects, new org.eclipse.rdf4j.query.algebra.StatementPattern(new Var("s"), new Var("p", RDF.TYPE),
+				new Var("type"), new Var("g")));
+		Map<Resource, Set<Resource>> seenContexts = new HashMap<>();
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter =
+				     ctx.baseConnection().evaluate(expr, null, EmptyBindingSet.getInstance(), false)) {
 			while (bindingsIter.hasNext()) {
 				BindingSet bindings = bindingsIter.next();
-				classes.add((Resource) bindings.getValue("superClass"));
+				Resource subject = (Resource) bindings.getValue("s");
+				Value type = bindings.getValue("type");
+				ResourceInfo info = infos.get(subject);
+				if (info != null && type instanceof Resource) {
+					info.types.add((Resource) type);
+					Resource context = (Resource) bindings.getValue("g");
+					if (seenContexts.computeIfAbsent(subject, s -> new HashSet<>()).add(context)) {
+						info.contexts.add(context);
+					}
+				}
 			}
 		}
-		return new ArrayList<>(classes);
+		infos.forEach((resource, info) -> {
+			sort(info.types);
+			resourceInfos.put(resource, info);
+		});
+	}
+
+	public ResultSpec<OMObject> getExpressionSpec(EvaluationContext ctx, Object subject, IReference property) {
+		ConstraintInfo constraint = getConstraint(ctx, (Resource) subject, property);
+		return constraint != null ? constraint.mathObj : ResultSpec.empty();
 	}
 
-	@Override
-	public ResultSpec<OMObject> getExpressionSpec(Object subject, IReference property) {
-		Resource subjectResource = (Resource) subject;
-		Set<IRI> graphs = dataset.get().getDefaultGraphs();
-		for (Resource clazz : getResourceInfo(subjectResource).types) {
-			Stream<ConstraintInfo> constraints = getConstraintsForClass(clazz).stream()
-					.filter(c -> property.equals(c.property) &&
-							// only consider accessible graphs
-							c.graph == null || graphs.contains(c.graph));
+	/**
+	 * Returns the compiled form of the constraint expression for the given property of a subject.
+	 *
+	 * @return the compiled expression or <code>null</code> if the property has no constraint or
+	 * its expression needs to be interpreted
+	 */
+	CompiledExpression getCompiledExpression(EvaluationContext ctx, Object subject, IReference property) {
+		if (!compiledExpressions) {
+			return null;
+		}
+		ConstraintInfo constraint = getConstraint(ctx, (Resource) subject, property);
+		return constraint != null ? constraint.compiled : null;
+	}
+
+	/**
+	 * Returns the properties that are referenced by the constraint expression for the given property of a
+	 * subject.
+	 */
+	Set<IReference> getReferencedProperties(EvaluationContext ctx, Object subject, IReference property) {
+		ConstraintInfo constraint = getConstraint(ctx, (Resource) subject, property);
+		return constraint != null ? constraint.references() : Collections.emptySet();
+	}
 
-			Optional<ConstraintInfo> c = constraints.findFirst();
-			if (c.isPresent()) {
-				return c.get().mathObj;
+	private ConstraintInfo getConstraint(EvaluationContext ctx, Resource subject, IReference property) {
+		Set<IRI> graphs = ctx.dataset.getDefaultGraphs();
+		for (Resource clazz : getResourceInfo(ctx, subject).types) {
+			for (ConstraintInfo c : getConstraintsForProperty(ctx, clazz, property)) {
+				// only consider accessible graphs
+				if (c.graph == null || graphs.contains(c.graph)) {
+					return c;
+				}
 			}
 		}
-		return ResultSpec.empty();
+		return null;
 	}
 
-	public Set<IReference> getPropertiesWithConstraintsOfResource(ResourceInfo resourceInfo) {
+	public Set<IReference> getPropertiesWithConstraintsOfResource(EvaluationContext ctx, ResourceInfo resourceInfo) {
 		Set<IReference> properties = new HashSet<>();
-		Set<IRI> graphs = dataset.get().getDefaultGraphs();
+		Set<IRI> graphs = ctx.dataset.getDefaultGraphs();
 		for (Resource clazz : resourceInfo.types) {
-			Stream<ConstraintInfo> constraints = getConstraintsForClass(clazz).stream();
+			Stream<ConstraintInfo> constraints = getConstraintsForClass(ctx, clazz).stream();
 			if (!graphs.isEmpty()) {
 				// only consider accessible graphs
 				constraints = constraints.filter(c -> c.graph == null || graphs.contains(c.graph));
@@ -256,89 +459,135 @@ class Rdf4jModelAccess implements IModelAccess {
 		return properties;
 	}
 
-	public List<ConstraintInfo> getConstraintsForClass(Resource clazz) {
-		List<ConstraintInfo> constraints = classToConstraints.get(clazz);
+	public List<ConstraintInfo> getConstraintsForClass(EvaluationContext ctx, Resource clazz) {
+		return getClassConstraints(ctx, clazz).constraints;
+	}
+
+	/**
+	 * Returns the effective constraints of a class for the given property in the order of their precedence.
+	 */
+	List<ConstraintInfo> getConstraintsForProperty(EvaluationContext ctx, Resource clazz, IReference property) {
+		return getClassConstraints(ctx, clazz).byProperty().getOrDefault(property, Collections.emptyList());
+	}
+
+	private ClassConstraints getClassConstraints(EvaluationContext ctx, Resource clazz) {
+		ClassConstraints constraints = classToConstraints.get(clazz);
 		if (constraints == null) {
-			constraints = new ArrayList<>();
-			classToConstraints.put(clazz, constraints);
-
-			BindingSet bindingSet = new ListBindingSet(List.of("c"), List.of(clazz));
-			try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection.get()
-					.evaluate(constraintQuery.getTupleExpr(), ALL_GRAPHS, bindingSet, false)) {
-				while (bindingsIter.hasNext()) {
-					BindingSet bindings = bindingsIter.next();
-					Resource constraintResource = (Resource) bindings.getValue("constraint");
-					Resource propertyResource = (IRI) bindings.getValue("property");
-					Resource definingGraph = (IRI) bindings.getValue("g");
-
-					Resource[] readCtx;
-					if (definingGraph != null) {
-						readCtx = new Resource[]{definingGraph};
-					} else {
-						readCtx = EMPTY_CTX;
-					}
-					OMObject mathObj = null;
-					try (CloseableIteration<? extends org.eclipse.rdf4j.model.Statement, SailException> stmts =
-							     connection.get().getStatements(constraintResource,
-									     valueConverter.toRdf4j(NWRULES.NAMESPACE_URI.appendLocalPart("expressionString")),
-									     null, false, readCtx)) {
-						if (stmts.hasNext()) {
-							org.eclipse.rdf4j.model.Statement stmt = stmts.next();
-							String expString = ((org.eclipse.rdf4j.model.Literal) stmt.getObject()).getLabel();
-
-							mathObj = expressionCache.get(expString, () -> {
-								INamespaces namespaces = getNamespaces(stmt.getSubject());
-								PopcornParser popcornParser = Parboiled.createParser(PopcornParser.class, namespaces);
-								ParsingResult<Object> result = new ReportingParseRunner<>(popcornParser.Expr()).run(expString);
-								if (result.matched && result.resultValue != null) {
-									return (OMObject) result.resultValue;
-								} else {
-									// an error has occurred during parsing
-									return OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
-											OMObject.OMSTR(ErrorUtils.printParseErrors(result))});
-								}
-							});
-						}
-					} catch (ExecutionException e) {
-						mathObj = OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
-								OMObject.OMSTR(e.toString())});
-					}
-					if (mathObj == null) {
-						try (CloseableIteration<? extends org.eclipse.rdf4j.model.Statement, SailException> stmts =
-								     connection.get().getStatements(constraintResource,
-										     valueFactory.createIRI(NWRULES.NAMESPACE, "expression"),
-										     null, false, readCtx)) {
-							if (stmts.hasNext()) {
-								org.eclipse.rdf4j.model.Statement stmt = stmts.next();
-								if (stmt.getObject() instanceof Resource) {
-									mathObj = parseExpression((Resource) stmt.getObject());
-								}
-							}
-						}
-					}
-					if (mathObj == null) {
-						OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
-								OMObject.OMSTR("Expression for constraint '" + constraintResource + "' missing.")});
-					}
-					constraints.add(new ConstraintInfo(definingGraph, valueConverter.fromRdf4j(propertyResource),
-							ResultSpec.create(Cardinality.SINGLE, mathObj)));
-				}
+			constraints = loadConstraintsForClass(ctx, clazz, new HashMap<>());
+		}
+		return constraints;
+	}
+
+	/**
+	 * Loads the constraints of a class without holding a lock. Concurrent loads of the same class yield
+	 * equal results, the first one is published.
+	 *
+	 * @param loading the constraints of the classes whose loading is in progress in the current thread, used to
+	 *                break cycles in the class hierarchy
+	 */
+	private ClassConstraints loadConstraintsForClass(EvaluationContext ctx, Resource clazz,
+	                                                 Map<Resource, List<ConstraintInfo>> loading) {
+		long version = classInfoVersion.get();
+		List<ConstraintInfo> constraints = new ArrayList<>();
+		loading.put(clazz, constraints);
+		try {
+			constraintIndex.ensureLoaded(ctx.connection);
+			for (ConstraintIndex.Declaration declaration : constraintIndex.getDeclarations(clazz)) {
+				constraints.add(constraintInfos.computeIfAbsent(declaration, d -> createConstraintInfo(ctx, d)));
 			}
 
 			// add inherited constraints from super classes
-			for (Resource superClass : sort(getDirectSuperClasses(clazz))) {
+			for (Resource superClass : sort(constraintIndex.getDirectSuperClasses(clazz))) {
 				// order is important here, super constraints must come last
-				constraints.addAll(getConstraintsForClass(superClass));
+				ClassConstraints superConstraints = classToConstraints.get(superClass);
+				if (superConstraints != null) {
+					constraints.addAll(superConstraints.constraints);
+				} else if (loading.containsKey(superClass)) {
+					// cycle within the class hierarchy
+					constraints.addAll(loading.get(superClass));
+				} else {
+					constraints.addAll(loadConstraintsForClass(ctx, superClass, loading).constraints);
+				}
 			}
+		} finally {
+			loading.remove(clazz);
 		}
-		return constraints;
+		ClassConstraints loaded = new ClassConstraints(constraints);
+		// constraints that have been loaded before an invalidation may be outdated and are not published
+		ClassConstraints published = classToConstraints.compute(clazz, (c, existing) -> existing != null ?
+				existing : (classInfoVersion.get() == version ? loaded : null));
+		return published != null ? published : loaded;
 	}
 
-	protected INamespaces getNamespaces(Resource constraint) {
+	private ConstraintInfo createConstraintInfo(EvaluationContext ctx, ConstraintIndex.Declaration declaration) {
+		Resource constraintResource = declaration.constraint;
+		Resource definingGraph = declaration.graph;
+
+		Resource[] readCtx;
+		if (definingGraph != null) {
+			readCtx = new Resource[]{definingGraph};
+		} else {
+			readCtx = EMPTY_CTX;
+		}
+		OMObject mathObj = null;
+		try (CloseableIteration<? extends org.eclipse.rdf4j.model.Statement, SailException> stmts =
+				     ctx.connection.getStatements(constraintResource,
+						     valueConverter.toRdf4j(NWRULES.NAMESPACE_URI.appendLocalPart("expressionString")),
+						     null, false, readCtx)) {
+			if (stmts.hasNext()) {
+				org.eclipse.rdf4j.model.Statement stmt = stmts.next();
+				String expString = ((org.eclipse.rdf4j.model.Literal) stmt.getObject()).getLabel();
+
+				SimpleNamespaces namespaces = getNamespaces(ctx, stmt.getSubject());
+				HashCode hash = ExpressionStore.hash(expString, namespaces.mappings);
+				mathObj = expressionCache.get(hash, () -> {
+					// expressions that have been parsed before the last restart
+					OMObject stored = expressionStore.get(hash);
+					if (stored != null) {
+						return stored;
+					}
+					PopcornParser popcornParser = Parboiled.createParser(PopcornParser.class, namespaces);
+					ParsingResult<Object> result = new ReportingParseRunner<>(popcornParser.Expr()).run(expString);
+					if (result.matched && result.resultValue != null) {
+						expressionStore.put(hash, (OMObject) result.resultValue);
+						return (OMObject) result.resultValue;
+					} else {
+						// an error has occurred during parsing
+						return OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
+								OMObject.OMSTR(ErrorUtils.printParseErrors(result))});
+					}
+				});
+			}
+		} catch (ExecutionException e) {
+			mathObj = OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
+					OMObject.OMSTR(e.toString())});
+		}
+		if (mathObj == null) {
+			try (CloseableIteration<? extends org.eclipse.rdf4j.model.Statement, SailException> stmts =
+					     ctx.connection.getStatements(constraintResource,
+							     valueFactory.createIRI(NWRULES.NAMESPACE, "expression"),
+							     null, false, readCtx)) {
+				if (stmts.hasNext()) {
+					org.eclipse.rdf4j.model.Statement stmt = stmts.next();
+					if (stmt.getObject() instanceof Resource) {
+						mathObj = parseExpression(ctx, (Resource) stmt.getObject());
+					}
+				}
+			}
+		}
+		if (mathObj == null) {
+			OMObject.OME(new OMObject[]{OMObject.OMS("nw:error"),
+					OMObject.OMSTR("Expression for constraint '" + constraintResource + "' missing.")});
+		}
+		return new ConstraintInfo(definingGraph, valueConverter.fromRdf4j(declaration.property),
+				ResultSpec.create(Cardinality.SINGLE, mathObj));
+	}
+
+	protected SimpleNamespaces getNamespaces(EvaluationContext ctx, Resource constraint) {
 		SimpleNamespaces namespaces = new SimpleNamespaces(INamespaces.empty());
 		BindingSet bindingSet = new ListBindingSet(List.of("resource"), List.of(constraint));
-		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection.get()
-				.evaluate(namespacesQuery.getTupleExpr(), dataset.get(), bindingSet, false)) {
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = ctx.connection
+				.evaluate(namespacesQuery.getTupleExpr(), ctx.dataset, bindingSet, false)) {
 			while (bindingsIter.hasNext()) {
 				BindingSet bindings = bindingsIter.next();
 				String prefix = ((org.eclipse.rdf4j.model.Literal) bindings.getValue("prefix")).getLabel();
@@ -349,12 +598,11 @@ class Rdf4jModelAccess implements IModelAccess {
 		return namespaces;
 	}
 
-	@Override
-	public IExtendedIterator<?> getInstances(IReference clazz) {
+	public IExtendedIterator<?> getInstances(EvaluationContext ctx, IReference clazz) {
 		BindingSet bindingSet = new ListBindingSet(List.of("class"), List.of(valueConverter.toRdf4j(clazz)));
 		List<Object> instances = new ArrayList<>();
-		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = connection.get()
-				.evaluate(instancesQuery.getTupleExpr(), dataset.get(), bindingSet, false)) {
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter = ctx.connection
+				.evaluate(instancesQuery.getTupleExpr(), ctx.dataset, bindingSet, false)) {
 			while (bindingsIter.hasNext()) {
 				BindingSet bindings = bindingsIter.next();
 				Resource instance = (Resource) bindings.getValue("instance");
@@ -364,36 +612,157 @@ class Rdf4jModelAccess implements IModelAccess {
 		return WrappedIterator.create(instances.iterator());
 	}
 
-	@Override
-	public IReference createInstance(Object scope, URI property, URI uri, IReference clazz, Map<URI, Object> args) {
+	public IReference createInstance(EvaluationContext ctx, Object scope, URI property, URI uri, IReference clazz, Map<URI, Object> args) {
 		return null;
 	}
 
-	@Override
-	public IExtendedIterator<?> getPropertyValues(Object subject, IReference property,
+	public IExtendedIterator<?> getPropertyValues(EvaluationContext ctx, Object subject, IReference property,
 	                                              Optional<IReference> restriction) {
-		SailConnection baseConn = ((SailConnectionWrapper) connection.get()).getWrappedConnection();
-		var readCtx = readContext();
-		Stream<? extends org.eclipse.rdf4j.model.Statement> stmts = baseConn.getStatements((Resource) subject,
-				mapProperty(property), null, false, readCtx).stream();
-		if (restriction.isPresent()) {
-			Resource restrictionResource = valueConverter.toRdf4j(restriction.get());
-			stmts = stmts.filter(stmt -> stmt.getObject().isLiteral() ? true :
-					baseConn.hasStatement((Resource) stmt.getObject(), RDF.TYPE, restrictionResource,
-							true, readCtx));
-		}
 		if (logger.isDebugEnabled()) {
 			logger.debug("get property {} {}", subject, property);
 		}
-		return WrappedIterator.create(stmts.map(stmt -> {
-			if (logger.isDebugEnabled()) {
-				logger.debug("        -> {}", stmt.getObject());
+		CloseableIteration<? extends org.eclipse.rdf4j.model.Statement, SailException> stmts = ctx.baseConnection()
+				.getStatements((Resource) subject, mapProperty(property), null, false, ctx.context);
+		if (restriction.isEmpty()) {
+			// values are converted while they are consumed by the evaluator
+			return new NiceIterator<>() {
+				@Override
+				public boolean hasNext() {
+					if (stmts.hasNext()) {
+						return true;
+					}
+					stmts.close();
+					return false;
+				}
+
+				@Override
+				public Object next() {
+					return toObject(stmts.next().getObject());
+				}
+
+				@Override
+				public void close() {
+					stmts.close();
+				}
+			};
+		}
+
+		List<Value> values = new ArrayList<>();
+		List<Resource> resources = new ArrayList<>();
+		try (stmts) {
+			while (stmts.hasNext()) {
+				Value value = stmts.next().getObject();
+				values.add(value);
+				if (value instanceof Resource) {
+					resources.add((Resource) value);
+				}
+			}
+		}
+		Set<Resource> instances = resources.isEmpty() ? Collections.emptySet() :
+				getInstances(ctx, resources, valueConverter.toRdf4j(restriction.get()));
+		List<Object> result = new ArrayList<>(values.size());
+		for (Value value : values) {
+			if (value.isLiteral() || instances.contains(value)) {
+				result.add(toObject(value));
+			}
+		}
+		return WrappedIterator.create(result.iterator());
+	}
+
+	/**
+	 * Returns the given resources that are instances of <code>type</code> within the readable graphs
+	 * by using one lookup for all resources.
+	 */
+	protected Set<Resource> getInstances(EvaluationContext ctx, List<Resource> resources, Resource type) {
+		SailConnection baseConn = ctx.baseConnection();
+		if (resources.size() == 1) {
+			Resource resource = resources.get(0);
+			return baseConn.hasStatement(resource, RDF.TYPE, type, true, ctx.context) ?
+					Set.of(resource) : Collections.emptySet();
+		}
+		List<BindingSet> bindingSets = new ArrayList<>(resources.size());
+		for (Resource resource : resources) {
+			bindingSets.add(new ListBindingSet(List.of("s"), List.of(resource)));
+		}
+		BindingSetAssignment subjects = new BindingSetAssignment();
+		subjects.setBindingSets(bindingSets);
+		TupleExpr expr = new Join(subjects, new org.eclipse.rdf4j.query.algebra.StatementPattern(new Var("s"),
+				new Var("p", RDF.TYPE), new Var("type", type)));
+		Set<Resource> instances = new HashSet<>();
+		try (CloseableIteration<? extends BindingSet, QueryEvaluationException> bindingsIter =
+				     baseConn.evaluate(expr, ctx.dataset, EmptyBindingSet.getInstance(), true)) {
+			while (bindingsIter.hasNext()) {
+				instances.add((Resource) bindingsIter.next().getValue("s"));
+			}
+		}
+		return instances;
+	}
+
+	/**
+	 * Converts an RDF value into an object for the evaluator. Literals with common XSD datatypes are
+	 * directly converted into the same Java types that are created by the {@link LiteralConverter}.
+	 */
+	protected Object toObject(Value value) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("        -> {}", value);
+		}
+		if (!value.isLiteral()) {
+			return value;
+		}
+		org.eclipse.rdf4j.model.Literal literal = (org.eclipse.rdf4j.model.Literal) value;
+		CoreDatatype datatype = literal.getCoreDatatype();
+		if (datatype instanceof CoreDatatype.XSD) {
+			try {
+				switch ((CoreDatatype.XSD) datatype) {
+					case DOUBLE:
+						return literal.doubleValue();
+					case FLOAT:
+						return literal.floatValue();
+					case LONG:
+						return literal.longValue();
+					case INT:
+						return literal.intValue();
+					case SHORT:
+						return literal.shortValue();
+					case BYTE:
+						return literal.byteValue();
+					case BOOLEAN:
+						return literal.booleanValue();
+					case STRING:
+						return literal.getLabel();
+				}
+			} catch (IllegalArgumentException e) {
+				// invalid lexical value, let the literal converter decide
+			}
+		}
+		Object converted = literalCache.getIfPresent(literal);
+		if (converted == null) {
+			converted = convertLiteral(literal, datatype);
+			if (converted != null) {
+				literalCache.put(literal, converted);
 			}
-			if (stmt.getObject().isLiteral()) {
-				return literalConverter.createObject((ILiteral) valueConverter.fromRdf4j(stmt.getObject()));
+		}
+		return converted;
+	}
+
+	private Object convertLiteral(org.eclipse.rdf4j.model.Literal literal, CoreDatatype datatype) {
+		if (datatype instanceof CoreDatatype.XSD) {
+			try {
+				switch ((CoreDatatype.XSD) datatype) {
+					case DECIMAL:
+						return literal.decimalValue();
+					case INTEGER:
+					case NON_POSITIVE_INTEGER:
+					case NEGATIVE_INTEGER:
+					case NON_NEGATIVE_INTEGER:
+					case POSITIVE_INTEGER:
+						return literal.integerValue();
+				}
+			} catch (IllegalArgumentException e) {
+				// invalid lexical value, let the literal converter decide
 			}
-			return stmt.getObject();
-		}).collect(Collectors.toList()).iterator());
+		}
+		return literalConverter.createObject((ILiteral) valueConverter.fromRdf4j(literal));
 	}
 
 	protected List<Resource> sort(List<Resource> classes) {
@@ -401,7 +770,7 @@ class Rdf4jModelAccess implements IModelAccess {
 		return classes;
 	}
 
-	public void setPropertyValue(Object subject, IReference property, List<Object> results) {
+	public void setPropertyValue(EvaluationContext ctx, Object subject, IReference property, List<Object> results) {
 		// ((InferencerConnection) connection.get()).removeInferredStatement((Resource) subject,
 		//		(IRI) valueConverter.toRdf4j(property), null);
 		if (!results.isEmpty()) {
@@ -414,8 +783,8 @@ class Rdf4jModelAccess implements IModelAccess {
 			} else {
 				rdfValue = valueConverter.toRdf4j(literalConverter.createLiteral(value, null));
 			}
-			((InferencerConnection) connection.get()).addInferredStatement((Resource) subject,
-					mapProperty(property), rdfValue, writeContext((Resource) subject));
+			((InferencerConnection) ctx.connection).addInferredStatement((Resource) subject,
+					mapProperty(property), rdfValue, writeContext(ctx, (Resource) subject));
 		}
 		// System.out.println(String.format("%s: %s = %s", subject, property, results));
 	}
@@ -424,30 +793,40 @@ class Rdf4jModelAccess implements IModelAccess {
 		return propertyCache.computeIfAbsent(property, p -> (IRI) valueConverter.toRdf4j(p));
 	}
 
-	Resource[] readContext() {
-		Resource[] graphs = context.get();
-		return graphs != null ? graphs : EMPTY_CTX;
-	}
-
-	Resource[] writeContext(Resource resource) {
-		Resource[] graphs = context.get();
-		if (graphs != null && graphs.length > 0) {
-			for (Resource resourceCtx : getResourceInfo(resource).contexts) {
-				for (Resource readableCtx : graphs) {
-					if (resourceCtx == readableCtx || resourceCtx.equals(readableCtx)) {
-						return new Resource[]{resourceCtx};
-					}
+	/**
+	 * Returns the graph of the given resource that is readable within the context.
+	 */
+	Resource[] writeContext(EvaluationContext ctx, Resource resource) {
+		if (ctx.context.length == 0) {
+			return EMPTY_CTX;
+		}
+		return ctx.writeContexts.computeIfAbsent(resource, r -> {
+			for (Resource resourceCtx : getResourceInfo(ctx, r).contexts) {
+				if (resourceCtx != null && ctx.readable.contains(resourceCtx)) {
+					return new Resource[]{resourceCtx};
 				}
 			}
-		}
-		return EMPTY_CTX;
+			return EMPTY_CTX;
+		});
 	}
 
-	void addDependency(Pair<Object, IReference> from, Pair<Object, IReference> to) {
+	void setDependencyStatements(boolean dependencyStatements) {
+		this.dependencyStatements = dependencyStatements;
+	}
+
+	void setCompiledExpressions(boolean compiledExpressions) {
+		this.compiledExpressions = compiledExpressions;
+	}
+
+	void addDependency(EvaluationContext ctx, Pair<Object, IReference> from, Pair<Object, IReference> to) {
+		dependencies.add(from, to);
+		if (!dependencyStatements) {
+			return;
+		}
 		try {
 			dependencyCache.get(new Pair<>((Resource) from.getFirst(), (Resource) to.getFirst()), () -> {
-				((InferencerConnection) connection.get()).addInferredStatement((Resource) to.getFirst(),
-						USED_BY, (Resource) from.getFirst(), writeContext((Resource) to.getFirst()));
+				((InferencerConnection) ctx.connection).addInferredStatement((Resource) to.getFirst(),
+						USED_BY, (Resource) from.getFirst(), writeContext(ctx, (Resource) to.getFirst()));
 				return true;
 			});
 		} catch (ExecutionException e) {
@@ -459,23 +838,97 @@ class Rdf4jModelAccess implements IModelAccess {
 		dependencyCache.invalidateAll();
 	}
 
-	public void invalidateClassInfo(Resource clazz) {
-		classToConstraints.remove(clazz);
+	public void invalidateClassInfo(EvaluationContext ctx, Resource clazz) {
+		for (ConstraintIndex.Declaration declaration : constraintIndex.reload(ctx.connection, clazz)) {
+			constraintInfos.remove(declaration);
+		}
+		classInfoVersion.incrementAndGet();
+		// the effective constraints of sub classes may also have changed
+		for (Resource subClass : constraintIndex.getSubClasses(clazz)) {
+			classToConstraints.remove(subClass);
+		}
 	}
 
 	public void invalidateResourceInfo(Resource subject) {
 		resourceInfos.remove(subject);
 	}
 
+	/**
+	 * The effective constraints of a class.
+	 */
+	static class ClassConstraints {
+		final List<ConstraintInfo> constraints;
+		private volatile Map<IReference, List<ConstraintInfo>> byProperty;
+
+		ClassConstraints(List<ConstraintInfo> constraints) {
+			this.constraints = constraints;
+		}
+
+		/**
+		 * Returns the constraints grouped by property, concurrent callers may compute equal maps.
+		 */
+		Map<IReference, List<ConstraintInfo>> byProperty() {
+			Map<IReference, List<ConstraintInfo>> map = byProperty;
+			if (map == null) {
+				map = new HashMap<>();
+				for (ConstraintInfo c : constraints) {
+					map.computeIfAbsent(c.property, p -> new ArrayList<>(1)).add(c);
+				}
+				byProperty = map;
+			}
+			return map;
+		}
+	}
+
+	static class ParsedExpression {
+		final OMObject expression;
+		final long version;
+
+		ParsedExpression(OMObject expression, long version) {
+			this.expression = expression;
+			this.version = version;
+		}
+	}
+
 	static class ConstraintInfo {
 		final Resource graph;
 		final IReference property;
 		final ResultSpec<OMObject> mathObj;
+		final CompiledExpression compiled;
+		private volatile Set<IReference> references;
 
 		ConstraintInfo(Resource graph, IReference property, ResultSpec<OMObject> mathObj) {
 			this.graph = graph;
 			this.property = property;
 			this.mathObj = mathObj;
+			this.compiled = CompiledExpression.compile(mathObj.result);
+		}
+
+		Set<IReference> references() {
+			Set<IReference> result = references;
+			if (result == null) {
+				result = new HashSet<>();
+				collectReferences(mathObj.result, result);
+				references = result;
+			}
+			return result;
+		}
+
+		private static void collectReferences(Object arg, Set<IReference> references) {
+			if (arg instanceof OMObject) {
+				OMObject expr = (OMObject) arg;
+				Object[] args = expr.getArgs();
+				if (expr.getType() == OMObject.Type.OMR && args != null && args.length == 1
+						&& args[0] instanceof IReference) {
+					references.add((IReference) args[0]);
+				} else {
+					collectReferences(args, references);
+				}
+			} else if (arg instanceof Object[]) {
+				for (Object element : (Object[]) arg) {
+					collectReferences(element, references);
+				}
+			}
 		}
 	}
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import net.enilink.commons.util.Pair;
+import net.enilink.komma.core.IReference;
+import org.eclipse.rdf4j.model.Value;
+import org.numerateweb.math.model.OMObject;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Creates the caches of a {@link NumerateWebSail} from Guava {@link CacheBuilderSpec} strings and
+ * collects their statistics.
+ * <p>
+ * A cache may be bounded by its number of entries via <code>maximumSize</code> or by its estimated
+ * memory consumption in bytes via <code>maximumWeight</code>. Weights are estimated from the keys and values
+ * with {@link #weigh(Object)} when an entry is added or replaced.
+ */
+class SailCaches {
+	static final Map<String, String> DEFAULT_SPECS = Map.of(
+			NumerateWebSail.PROPERTY_CACHE, "maximumSize=100000",
+			NumerateWebSail.DATASET_CACHE, "maximumSize=1000",
+			NumerateWebSail.DEPENDENCY_CACHE, "maximumSize=100000",
+			NumerateWebSail.EXPRESSION_CACHE, "maximumSize=10000",
+			NumerateWebSail.LITERAL_CACHE, "maximumSize=100000",
+			NumerateWebSail.EVALUATION_CACHE, "maximumSize=10000000,expireAfterWrite=60s");
+
+	/**
+	 * Weight in bytes of an object if no specific estimation is available.
+	 */
+	static final int DEFAULT_WEIGHT = 128;
+
+	/**
+	 * Estimates the retained size of an object in bytes. Nested collections, arrays and OpenMath objects are
+	 * weighed recursively.
+	 */
+	static int weigh(Object object) {
+		if (object == null) {
+			return 0;
+		} else if (object instanceof Number || object instanceof Boolean) {
+			return 24;
+		} else if (object instanceof String) {
+			return 40 + 2 * ((String) object).length();
+		} else if (object instanceof Value) {
+			return 56 + 2 * ((Value) object).stringValue().length();
+		} else if (object instanceof IReference) {
+			return 56 + 2 * object.toString().length();
+		} else if (object instanceof Pair) {
+			Pair<?, ?> pair = (Pair<?, ?>) object;
+			return 24 + weigh(pair.getFirst()) + weigh(pair.getSecond());
+		} else if (object instanceof Collection) {
+			int weight = 40;
+			for (Object element : (Collection<?>) object) {
+				weight += 8 + weigh(element);
+			}
+			return weight;
+		} else if (object instanceof Object[]) {
+			int weight = 16;
+			for (Object element : (Object[]) object) {
+				weight += 4 + weigh(element);
+			}
+			return weight;
+		} else if (object instanceof OMObject) {
+			return 24 + weigh(((OMObject) object).getArgs());
+		} else if (object instanceof CachedEntity) {
+			return ((CachedEntity) object).weigh();
+		}
+		return DEFAULT_WEIGHT;
+	}
+
+	private final Map<String, String> specs = new ConcurrentHashMap<>(DEFAULT_SPECS);
+	/**
+	 * The caches are weakly referenced as evaluators and graph shards are created and discarded while the
+	 * sail is running.
+	 */
+	private final Map<String, List<Supplier<InstrumentedCache<?, ?>>>> caches = new ConcurrentHashMap<>();
+	private volatile CacheProvider provider = new GuavaCacheProvider();
+
+	/**
+	 * Sets the specification for the cache with the given name.
+	 *
+	 * @param name the name of the cache
+	 * @param spec a specification as accepted by {@link CacheBuilderSpec#parse(String)} without refresh options
+	 *             or <code>null</code> to use the default specification
+	 */
+	void setSpec(String name, String spec) {
+		if (!DEFAULT_SPECS.containsKey(name)) {
+			throw new IllegalArgumentException("Unknown cache: " + name);
+		}
+		if (spec == null) {
+			specs.put(name, DEFAULT_SPECS.get(name));
+		} else {
+			// fails with an IllegalArgumentException for invalid specifications
+			CacheBuilderSpec.parse(spec);
+			if (spec.contains("refresh")) {
+				throw new IllegalArgumentException("Caches are not loading caches and can not be refreshed: " + spec);
+			}
+			specs.put(name, spec);
+		}
+	}
+
+	String getSpec(String name) {
+		return specs.get(name);
+	}
+
+	void setProvider(CacheProvider provider) {
+		this.provider = provider;
+	}
+
+	CacheProvider getProvider() {
+		return provider;
+	}
+
+	/**
+	 * Creates a new cache for the evaluator with the current {@link CacheProvider}.
+	 *
+	 * @param name the name of the cache
+	 * @return the new cache
+	 */
+	<K, V> InstrumentedCache<K, V> create(String name) {
+		InstrumentedCache<K, V> cache = provider.createCache(specs.get(name));
+		WeakReference<InstrumentedCache<?, ?>> ref = new WeakReference<>(cache);
+		register(name, ref::get);
+		return cache;
+	}
+
+	/**
+	 * Creates a new cache with the specification for the given name.
+	 *
+	 * @param name    the name of the cache
+	 * @param weigher estimates the size of an entry in bytes if the cache is bounded by weight
+	 * @return the new cache
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	<K, V> Cache<K, V> build(String name, Weigher<? super K, ? super V> weigher) {
+		String spec = specs.get(name);
+		CacheBuilder<Object, Object> builder = CacheBuilder.from(spec).recordStats();
+		Cache<K, V> cache;
+		if (spec.contains("maximumWeight")) {
+			cache = builder.weigher(weigher).build();
+		} else {
+			cache = builder.build();
+		}
+		WeakReference<Cache> ref = new WeakReference<>(cache);
+		register(name, () -> {
+			Cache c = ref.get();
+			return c == null ? null : new GuavaCache<>(c);
+		});
+		return cache;
+	}
+
+	private void register(String name, Supplier<InstrumentedCache<?, ?>> cache) {
+		List<Supplier<InstrumentedCache<?, ?>>> named = caches.computeIfAbsent(name,
+				n -> new CopyOnWriteArrayList<>());
+		named.removeIf(ref -> ref.get() == null);
+		named.add(cache);
+	}
+
+	/**
+	 * Returns the combined statistics of all caches with the same name that are still in use.
+	 */
+	List<CacheStatistics> getStatistics() {
+		List<CacheStatistics> statistics = new ArrayList<>();
+		for (String name : new TreeSet<>(caches.keySet())) {
+			CacheStats stats = new CacheStats(0, 0, 0, 0, 0, 0);
+			long size = 0;
+			for (Supplier<InstrumentedCache<?, ?>> ref : caches.get(name)) {
+				InstrumentedCache<?, ?> cache = ref.get();
+				if (cache != null) {
+					stats = stats.plus(cache.stats());
+					size += cache.size();
+				}
+			}
+			statistics.add(new CacheStatistics(name, specs.get(name), size, stats));
+		}
+		return statistics;
+	}
+}
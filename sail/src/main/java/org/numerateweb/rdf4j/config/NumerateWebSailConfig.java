@@ -15,6 +15,7 @@
  */
 package org.numerateweb.rdf4j.config;
 
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.ValueFactory;
@@ -23,9 +24,33 @@ import org.eclipse.rdf4j.model.util.ModelException;
 import org.eclipse.rdf4j.model.util.Models;
 import org.eclipse.rdf4j.sail.base.config.BaseSailConfig;
 import org.eclipse.rdf4j.sail.config.SailConfigException;
+import org.numerateweb.rdf4j.NumerateWebSail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class NumerateWebSailConfig extends BaseSailConfig {
+	private static final Map<String, IRI> CACHE_SPEC_PROPERTIES = new LinkedHashMap<>();
+
+	static {
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.PROPERTY_CACHE, NumerateWebSailSchema.PROPERTY_CACHE_SPEC);
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.DATASET_CACHE, NumerateWebSailSchema.DATASET_CACHE_SPEC);
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.DEPENDENCY_CACHE, NumerateWebSailSchema.DEPENDENCY_CACHE_SPEC);
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.EXPRESSION_CACHE, NumerateWebSailSchema.EXPRESSION_CACHE_SPEC);
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.LITERAL_CACHE, NumerateWebSailSchema.LITERAL_CACHE_SPEC);
+		CACHE_SPEC_PROPERTIES.put(NumerateWebSail.EVALUATION_CACHE, NumerateWebSailSchema.EVALUATION_CACHE_SPEC);
+	}
+
 	private boolean incrementalInference = false;
+	private int inferencingThreads = 1;
+	private boolean dependencyStatements = false;
+	private boolean asyncInferencing = false;
+	private long coalescingWindow = 0;
+	private int coalescingMaxChanges = 10000;
+	private double changeTolerance = 0;
+	private boolean jmxEnabled = false;
+	private String cacheProvider = null;
+	private final Map<String, String> cacheSpecs = new LinkedHashMap<>();
 
 	public NumerateWebSailConfig() {
 		super(NumerateWebSailFactory.SAIL_TYPE);
@@ -45,6 +70,119 @@ public class NumerateWebSailConfig extends BaseSailConfig {
 		return this;
 	}
 
+	public int getInferencingThreads() {
+		return inferencingThreads;
+	}
+
+	public NumerateWebSailConfig setInferencingThreads(int inferencingThreads) {
+		this.inferencingThreads = inferencingThreads;
+		return this;
+	}
+
+	public boolean getDependencyStatements() {
+		return dependencyStatements;
+	}
+
+	public NumerateWebSailConfig setDependencyStatements(boolean dependencyStatements) {
+		this.dependencyStatements = dependencyStatements;
+		return this;
+	}
+
+	public boolean getAsyncInferencing() {
+		return asyncInferencing;
+	}
+
+	public NumerateWebSailConfig setAsyncInferencing(boolean asyncInferencing) {
+		this.asyncInferencing = asyncInferencing;
+		return this;
+	}
+
+	public long getCoalescingWindow() {
+		return coalescingWindow;
+	}
+
+	/**
+	 * Sets the time in milliseconds that the asynchronous inferencing waits to merge the changes of
+	 * further commits.
+	 */
+	public NumerateWebSailConfig setCoalescingWindow(long coalescingWindow) {
+		this.coalescingWindow = coalescingWindow;
+		return this;
+	}
+
+	public int getCoalescingMaxChanges() {
+		return coalescingMaxChanges;
+	}
+
+	/**
+	 * Sets the number of changed resources that ends the coalescing window early.
+	 */
+	public NumerateWebSailConfig setCoalescingMaxChanges(int coalescingMaxChanges) {
+		this.coalescingMaxChanges = coalescingMaxChanges;
+		return this;
+	}
+
+	public double getChangeTolerance() {
+		return changeTolerance;
+	}
+
+	/**
+	 * Sets the relative tolerance below which a changed floating point value is not propagated.
+	 */
+	public NumerateWebSailConfig setChangeTolerance(double changeTolerance) {
+		this.changeTolerance = changeTolerance;
+		return this;
+	}
+
+	public boolean getJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public NumerateWebSailConfig setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+		return this;
+	}
+
+	public String getCacheProvider() {
+		return cacheProvider;
+	}
+
+	/**
+	 * Sets the name of the cache provider or <code>null</code> to use the default.
+	 *
+	 * @see NumerateWebSail#setCacheProvider(String)
+	 */
+	public NumerateWebSailConfig setCacheProvider(String cacheProvider) {
+		this.cacheProvider = cacheProvider;
+		return this;
+	}
+
+	/**
+	 * Returns the configured cache specifications by cache name.
+	 */
+	public Map<String, String> getCacheSpecs() {
+		return cacheSpecs;
+	}
+
+	/**
+	 * Sets the specification of a cache.
+	 *
+	 * @param cacheName the name of the cache, e.g. {@link NumerateWebSail#PROPERTY_CACHE}
+	 * @param spec      the specification or <code>null</code> to use the default
+	 * @see NumerateWebSail#setCacheSpec(String, String)
+	 */
+	public NumerateWebSailConfig setCacheSpec(String cacheName, String spec) {
+		if (!CACHE_SPEC_PROPERTIES.containsKey(cacheName)) {
+			throw new IllegalArgumentException("Unknown cache: " + cacheName);
+		}
+		if (spec == null) {
+			cacheSpecs.remove(cacheName);
+		} else {
+			cacheSpecs.put(cacheName, spec);
+		}
+		return this;
+	}
+
 	@Override
 	public Resource export(Model m) {
 		Resource implNode = super.export(m);
@@ -54,6 +192,33 @@ public class NumerateWebSailConfig extends BaseSailConfig {
 		if (!incrementalInference) {
 			m.add(implNode, NumerateWebSailSchema.INCREMENTAL_INFERENCE, vf.createLiteral(false));
 		}
+		if (inferencingThreads != 1) {
+			m.add(implNode, NumerateWebSailSchema.INFERENCING_THREADS, vf.createLiteral(inferencingThreads));
+		}
+		if (dependencyStatements) {
+			m.add(implNode, NumerateWebSailSchema.DEPENDENCY_STATEMENTS, vf.createLiteral(true));
+		}
+		if (asyncInferencing) {
+			m.add(implNode, NumerateWebSailSchema.ASYNC_INFERENCING, vf.createLiteral(true));
+		}
+		if (coalescingWindow != 0) {
+			m.add(implNode, NumerateWebSailSchema.COALESCING_WINDOW, vf.createLiteral(coalescingWindow));
+		}
+		if (coalescingMaxChanges != 10000) {
+			m.add(implNode, NumerateWebSailSchema.COALESCING_MAX_CHANGES, vf.createLiteral(coalescingMaxChanges));
+		}
+		if (changeTolerance != 0) {
+			m.add(implNode, NumerateWebSailSchema.CHANGE_TOLERANCE, vf.createLiteral(changeTolerance));
+		}
+		if (jmxEnabled) {
+			m.add(implNode, NumerateWebSailSchema.JMX_ENABLED, vf.createLiteral(true));
+		}
+		if (cacheProvider != null) {
+			m.add(implNode, NumerateWebSailSchema.CACHE_PROVIDER, vf.createLiteral(cacheProvider));
+		}
+		cacheSpecs.forEach((cacheName, spec) -> {
+			m.add(implNode, CACHE_SPEC_PROPERTIES.get(cacheName), vf.createLiteral(spec));
+		});
 		return implNode;
 	}
 
@@ -70,6 +235,70 @@ public class NumerateWebSailConfig extends BaseSailConfig {
 							"Boolean value required for " + NumerateWebSailSchema.INCREMENTAL_INFERENCE + " property, found " + lit);
 				}
 			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.INFERENCING_THREADS, null)).ifPresent(lit -> {
+				try {
+					setInferencingThreads(lit.intValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Integer value required for " + NumerateWebSailSchema.INFERENCING_THREADS + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.DEPENDENCY_STATEMENTS, null)).ifPresent(lit -> {
+				try {
+					setDependencyStatements(lit.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + NumerateWebSailSchema.DEPENDENCY_STATEMENTS + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.ASYNC_INFERENCING, null)).ifPresent(lit -> {
+				try {
+					setAsyncInferencing(lit.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + NumerateWebSailSchema.ASYNC_INFERENCING + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.COALESCING_WINDOW, null)).ifPresent(lit -> {
+				try {
+					setCoalescingWindow(lit.longValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Integer value required for " + NumerateWebSailSchema.COALESCING_WINDOW + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.COALESCING_MAX_CHANGES, null)).ifPresent(lit -> {
+				try {
+					setCoalescingMaxChanges(lit.intValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Integer value required for " + NumerateWebSailSchema.COALESCING_MAX_CHANGES + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.CHANGE_TOLERANCE, null)).ifPresent(lit -> {
+				try {
+					setChangeTolerance(lit.doubleValue());
+				} catch (NumberFormatException e) {
+					throw new SailConfigException(
+							"Numeric value required for " + NumerateWebSailSchema.CHANGE_TOLERANCE + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.JMX_ENABLED, null)).ifPresent(lit -> {
+				try {
+					setJmxEnabled(lit.booleanValue());
+				} catch (IllegalArgumentException e) {
+					throw new SailConfigException(
+							"Boolean value required for " + NumerateWebSailSchema.JMX_ENABLED + " property, found " + lit);
+				}
+			});
+			Models.objectLiteral(m.getStatements(implNode, NumerateWebSailSchema.CACHE_PROVIDER, null)).ifPresent(lit -> {
+				setCacheProvider(lit.getLabel());
+			});
+			CACHE_SPEC_PROPERTIES.forEach((cacheName, property) -> {
+				Models.objectLiteral(m.getStatements(implNode, property, null)).ifPresent(lit -> {
+					setCacheSpec(cacheName, lit.getLabel());
+				});
+			});
 		} catch (ModelException e) {
 			throw new SailConfigException(e.getMessage(), e);
 		}
@@ -58,7 +58,31 @@ public class NumerateWebSailFactory implements SailFactory {
 		NumerateWebSail sail = new NumerateWebSail();
 
 		if (config instanceof NumerateWebSailConfig) {
-			sail.setIncrementalInference(((NumerateWebSailConfig) config).getIncrementalInference());
+			NumerateWebSailConfig sailConfig = (NumerateWebSailConfig) config;
+			sail.setIncrementalInference(sailConfig.getIncrementalInference());
+			sail.setInferencingThreads(sailConfig.getInferencingThreads());
+			sail.setDependencyStatements(sailConfig.getDependencyStatements());
+			sail.setAsyncInferencing(sailConfig.getAsyncInferencing());
+			try {
+				sail.setCoalescingWindow(sailConfig.getCoalescingWindow());
+				sail.setCoalescingMaxChanges(sailConfig.getCoalescingMaxChanges());
+			} catch (IllegalArgumentException e) {
+				throw new SailConfigException("Invalid coalescing configuration: " + e.getMessage(), e);
+			}
+			try {
+				sail.setChangeTolerance(sailConfig.getChangeTolerance());
+			} catch (IllegalArgumentException e) {
+				throw new SailConfigException("Invalid change tolerance: " + e.getMessage(), e);
+			}
+			sail.setJmxEnabled(sailConfig.getJmxEnabled());
+			try {
+				if (sailConfig.getCacheProvider() != null) {
+					sail.setCacheProvider(sailConfig.getCacheProvider());
+				}
+				sailConfig.getCacheSpecs().forEach(sail::setCacheSpec);
+			} catch (IllegalArgumentException e) {
+				throw new SailConfigException("Invalid cache configuration: " + e.getMessage(), e);
+			}
 		} else {
 			logger.warn("Config is instance of {} is not NumerateWebSailConfig.", config.getClass().getName());
 		}
@@ -35,8 +35,92 @@ public class NumerateWebSailSchema {
 	 */
 	public final static IRI INCREMENTAL_INFERENCE;
 
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#inferencingThreads</tt>
+	 */
+	public final static IRI INFERENCING_THREADS;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#dependencyStatements</tt>
+	 */
+	public final static IRI DEPENDENCY_STATEMENTS;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#asyncInferencing</tt>
+	 */
+	public final static IRI ASYNC_INFERENCING;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#coalescingWindow</tt>
+	 */
+	public final static IRI COALESCING_WINDOW;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#coalescingMaxChanges</tt>
+	 */
+	public final static IRI COALESCING_MAX_CHANGES;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#changeTolerance</tt>
+	 */
+	public final static IRI CHANGE_TOLERANCE;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#propertyCacheSpec</tt>
+	 */
+	public final static IRI PROPERTY_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#datasetCacheSpec</tt>
+	 */
+	public final static IRI DATASET_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#dependencyCacheSpec</tt>
+	 */
+	public final static IRI DEPENDENCY_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#expressionCacheSpec</tt>
+	 */
+	public final static IRI EXPRESSION_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#literalCacheSpec</tt>
+	 */
+	public final static IRI LITERAL_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#evaluationCacheSpec</tt>
+	 */
+	public final static IRI EVALUATION_CACHE_SPEC;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#jmxEnabled</tt>
+	 */
+	public final static IRI JMX_ENABLED;
+
+	/**
+	 * <tt>http://rdf4j.org/config/sail/numerateweb#cacheProvider</tt>
+	 */
+	public final static IRI CACHE_PROVIDER;
+
 	static {
 		ValueFactory factory = SimpleValueFactory.getInstance();
 		INCREMENTAL_INFERENCE = factory.createIRI(NAMESPACE, "incrementalInference");
+		INFERENCING_THREADS = factory.createIRI(NAMESPACE, "inferencingThreads");
+		DEPENDENCY_STATEMENTS = factory.createIRI(NAMESPACE, "dependencyStatements");
+		ASYNC_INFERENCING = factory.createIRI(NAMESPACE, "asyncInferencing");
+		COALESCING_WINDOW = factory.createIRI(NAMESPACE, "coalescingWindow");
+		COALESCING_MAX_CHANGES = factory.createIRI(NAMESPACE, "coalescingMaxChanges");
+		CHANGE_TOLERANCE = factory.createIRI(NAMESPACE, "changeTolerance");
+		PROPERTY_CACHE_SPEC = factory.createIRI(NAMESPACE, "propertyCacheSpec");
+		DATASET_CACHE_SPEC = factory.createIRI(NAMESPACE, "datasetCacheSpec");
+		DEPENDENCY_CACHE_SPEC = factory.createIRI(NAMESPACE, "dependencyCacheSpec");
+		EXPRESSION_CACHE_SPEC = factory.createIRI(NAMESPACE, "expressionCacheSpec");
+		LITERAL_CACHE_SPEC = factory.createIRI(NAMESPACE, "literalCacheSpec");
+		EVALUATION_CACHE_SPEC = factory.createIRI(NAMESPACE, "evaluationCacheSpec");
+		JMX_ENABLED = factory.createIRI(NAMESPACE, "jmxEnabled");
+		CACHE_PROVIDER = factory.createIRI(NAMESPACE, "cacheProvider");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.*;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncInferencingTest {
+	static final String NS = IncrementalInferencingTest.NS;
+	static final ValueFactory vf = IncrementalInferencingTest.vf;
+
+	final IncrementalInferencingTest fixtures = new IncrementalInferencingTest();
+
+	protected NumerateWebSail createSail() {
+		NumerateWebSail sail = new NumerateWebSail(new MemoryStore());
+		sail.setAsyncInferencing(true);
+		return sail;
+	}
+
+	int getArea(RepositoryConnection connection, Resource r, IRI areaProperty) {
+		try (RepositoryResult<Statement> result = connection.getStatements(r, areaProperty, null)) {
+			Optional<Value> v = result.stream().map(st -> st.getObject()).findFirst();
+			assertTrue(v.isPresent());
+			return ((Literal) v.get()).intValue();
+		}
+	}
+
+	@Test
+	public void asyncTest() throws InterruptedException {
+		NumerateWebSail sail = createSail();
+		Repository repository = new SailRepository(sail);
+
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI aProperty = vf.createIRI(NS + "a");
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			fixtures.createPrefixes(connection);
+			fixtures.createConstraint(connection, rectangleClass, areaProperty, "@a * @b");
+			for (int i = 0; i < 5; i++) {
+				Resource r = vf.createIRI(NS + "rect" + i);
+				connection.add(r, RDF.TYPE, rectangleClass);
+				connection.add(r, aProperty, vf.createLiteral(i));
+				connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(2 * i));
+			}
+			connection.commit();
+		}
+		assertEquals(1, sail.getCommittedVersion());
+		assertTrue(sail.awaitInferencing(30, TimeUnit.SECONDS));
+		assertEquals(0, sail.getInferencingLag());
+
+		try (RepositoryConnection connection = repository.getConnection()) {
+			for (int i = 0; i < 5; i++) {
+				assertEquals(i * (2 * i), getArea(connection, vf.createIRI(NS + "rect" + i), areaProperty));
+			}
+		}
+
+		// each commit is a separate change set
+		for (int i = 0; i < 5; i++) {
+			try (RepositoryConnection connection = repository.getConnection()) {
+				connection.begin();
+				Resource r = vf.createIRI(NS + "rect" + i);
+				connection.remove(r, aProperty, null);
+				connection.add(r, aProperty, vf.createLiteral(3 * i));
+				connection.commit();
+			}
+		}
+		assertEquals(6, sail.getCommittedVersion());
+		assertTrue(sail.awaitInferencing(30, TimeUnit.SECONDS));
+		assertEquals(6, sail.getInferredVersion());
+
+		try (RepositoryConnection connection = repository.getConnection()) {
+			for (int i = 0; i < 5; i++) {
+				assertEquals(3 * i * (2 * i), getArea(connection, vf.createIRI(NS + "rect" + i), areaProperty));
+			}
+		}
+		repository.shutDown();
+	}
+
+	@Test
+	public void mergeTest() {
+		IRI a = vf.createIRI(NS + "a"), b = vf.createIRI(NS + "b");
+		IRI r1 = vf.createIRI(NS + "r1"), r2 = vf.createIRI(NS + "r2");
+		IRI c1 = vf.createIRI(NS + "C1"), c2 = vf.createIRI(NS + "C2");
+
+		AsyncInferencer.ChangeSet changes = new AsyncInferencer.ChangeSet(
+				new HashMap<>(Map.of(r1, Collections.emptyList())),
+				new HashMap<>(Map.of(r1, new HashSet<>(Set.of(a)))),
+				new HashMap<>(Map.of(c1, List.of(a))));
+		changes.merge(new AsyncInferencer.ChangeSet(
+				Map.of(r1, List.of(c1), r2, Collections.emptyList()),
+				Map.of(r1, Set.of(b), r2, Set.of(RDF.TYPE)),
+				Map.of(c1, List.of(b), c2, List.of(a))));
+		changes.merge(new AsyncInferencer.ChangeSet(
+				Map.of(r1, List.of(c2)), Map.of(r1, Set.of(a)), Collections.emptyMap()));
+
+		assertEquals(Map.of(r1, List.of(c1, c2), r2, Collections.emptyList()), changes.changedResources);
+		assertEquals(Map.of(r1, Set.of(a, b), r2, Set.of(RDF.TYPE)), changes.changedProperties);
+		assertEquals(Map.of(c1, List.of(a, b), c2, List.of(a)), changes.changedClasses);
+	}
+
+	@Test
+	public void coalescingTest() throws InterruptedException {
+		NumerateWebSail sail = createSail();
+		sail.setCoalescingWindow(200);
+		Repository repository = new SailRepository(sail);
+
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI aProperty = vf.createIRI(NS + "a");
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			fixtures.createPrefixes(connection);
+			fixtures.createConstraint(connection, rectangleClass, areaProperty, "@a * @b");
+			connection.commit();
+		}
+		// many small transactions whose changes are merged
+		for (int i = 0; i < 20; i++) {
+			try (RepositoryConnection connection = repository.getConnection()) {
+				connection.begin();
+				Resource r = vf.createIRI(NS + "rect" + i);
+				connection.add(r, RDF.TYPE, rectangleClass);
+				connection.add(r, aProperty, vf.createLiteral(i));
+				connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(2));
+				connection.commit();
+			}
+		}
+		assertEquals(21, sail.getCommittedVersion());
+		assertTrue(sail.awaitInferencing(30, TimeUnit.SECONDS));
+
+		try (RepositoryConnection connection = repository.getConnection()) {
+			for (int i = 0; i < 20; i++) {
+				assertEquals(2 * i, getArea(connection, vf.createIRI(NS + "rect" + i), areaProperty));
+			}
+		}
+		repository.shutDown();
+	}
+
+	@Test
+	public void failureTest() throws InterruptedException {
+		AtomicBoolean fail = new AtomicBoolean(true);
+		NumerateWebSail sail = new NumerateWebSail(new MemoryStore()) {
+			@Override
+			public void reevaluate(SailConnection connection, Map<Resource, List<Resource>> changedResources,
+			                       Map<Resource, Set<IRI>> changedProperties, Map<Resource, List<IRI>> changedClasses) {
+				if (fail.get()) {
+					throw new AssertionError("evaluation failed");
+				}
+				super.reevaluate(connection, changedResources, changedProperties, changedClasses);
+			}
+		};
+		sail.setAsyncInferencing(true);
+		Repository repository = new SailRepository(sail);
+
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI aProperty = vf.createIRI(NS + "a");
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			fixtures.createPrefixes(connection);
+			fixtures.createConstraint(connection, rectangleClass, areaProperty, "@a * @b");
+			for (int i = 0; i < 5; i++) {
+				Resource r = vf.createIRI(NS + "rect" + i);
+				connection.add(r, RDF.TYPE, rectangleClass);
+				connection.add(r, aProperty, vf.createLiteral(i));
+				connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(2 * i));
+			}
+			connection.commit();
+		}
+		// the watermark advances and the failure is recorded
+		assertTrue(sail.awaitInferencing(30, TimeUnit.SECONDS));
+		assertEquals(1, sail.getInferredVersion());
+		assertEquals(1, sail.getFailedVersion());
+		assertTrue(sail.getInferencingFailure() instanceof AssertionError);
+		try (RepositoryConnection connection = repository.getConnection()) {
+			assertFalse(connection.hasStatement(null, areaProperty, null, true));
+		}
+
+		// the background thread is still alive and recomputes all values with the next change
+		fail.set(false);
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			Resource r = vf.createIRI(NS + "rect0");
+			connection.remove(r, aProperty, null);
+			connection.add(r, aProperty, vf.createLiteral(7));
+			connection.commit();
+		}
+		assertTrue(sail.awaitInferencing(30, TimeUnit.SECONDS));
+		assertEquals(2, sail.getInferredVersion());
+		assertEquals(1, sail.getFailedVersion());
+
+		try (RepositoryConnection connection = repository.getConnection()) {
+			assertEquals(0, getArea(connection, vf.createIRI(NS + "rect0"), areaProperty));
+			for (int i = 1; i < 5; i++) {
+				assertEquals(i * (2 * i), getArea(connection, vf.createIRI(NS + "rect" + i), areaProperty));
+			}
+		}
+		repository.shutDown();
+	}
+}
@@ -17,6 +17,7 @@ package org.numerateweb.rdf4j;
 
 import org.eclipse.rdf4j.common.transaction.IsolationLevels;
 import org.eclipse.rdf4j.model.*;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.SHACL;
 import org.eclipse.rdf4j.repository.Repository;
@@ -26,7 +27,11 @@ import org.eclipse.rdf4j.repository.sail.SailRepository;
 import org.eclipse.rdf4j.sail.memory.MemoryStore;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -121,4 +126,56 @@ public class BasicInferencingTest {
 
 		repository.shutDown();
 	}
+
+	Map<IRI, Set<Value>> computeValues(NumerateWebSail sail, Map<String, String> expressions) {
+		Repository repository = new SailRepository(sail);
+		ValueFactory vf = repository.getValueFactory();
+		IRI valuesClass = vf.createIRI(NS + "Values");
+		Resource r = vf.createIRI(NS + "r");
+		Map<IRI, Set<Value>> values = new HashMap<>();
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			createPrefixes(connection);
+			expressions.forEach((property, expression) ->
+					createConstraint(connection, valuesClass, vf.createIRI(NS + property), expression));
+			connection.add(r, RDF.TYPE, valuesClass);
+			connection.add(r, vf.createIRI(NS + "x"), vf.createLiteral(1.5));
+			connection.add(r, vf.createIRI(NS + "y"), vf.createLiteral(-2.25));
+			connection.add(r, vf.createIRI(NS + "i"), vf.createLiteral(3));
+			connection.add(r, vf.createIRI(NS + "j"), vf.createLiteral(4L));
+			connection.commit();
+
+			for (String property : expressions.keySet()) {
+				IRI iri = vf.createIRI(NS + property);
+				try (RepositoryResult<Statement> result = connection.getStatements(r, iri, null)) {
+					values.put(iri, result.stream().map(Statement::getObject).collect(Collectors.toSet()));
+				}
+			}
+		} finally {
+			repository.shutDown();
+		}
+		return values;
+	}
+
+	@Test
+	public void compiledExpressionsTest() {
+		Map<String, String> expressions = new HashMap<>();
+		expressions.put("sum", "@x + @y + @i + 0.5");
+		expressions.put("product", "@x * @y * 2.0");
+		expressions.put("negated", "-(@x * @y)");
+		expressions.put("mixed", "@i * @x - @j");
+		expressions.put("integers", "@i * @j + 1");
+		expressions.put("chained", "@sum * @i");
+		expressions.put("power", "@x ^ 2");
+		expressions.put("infinite", "@x / 0.0");
+
+		NumerateWebSail interpreting = createSail();
+		interpreting.setCompiledExpressions(false);
+		Map<IRI, Set<Value>> expected = computeValues(interpreting, expressions);
+		Map<IRI, Set<Value>> actual = computeValues(createSail(), expressions);
+		assertEquals(expected, actual);
+		// the integer result is exact
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		assertEquals(13, ((Literal) actual.get(vf.createIRI(NS + "integers")).iterator().next()).intValue());
+	}
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CacheProviderTest {
+	@Test
+	public void caffeineSpecTest() {
+		assertEquals("maximumSize=100,expireAfterWrite=60s",
+				CaffeineCacheProvider.toCaffeineSpec("maximumSize=100, concurrencyLevel=4,expireAfterWrite=60s,recordStats"));
+		assertEquals("maximumWeight=1000,softValues", CaffeineCacheProvider.toCaffeineSpec("maximumWeight=1000,softValues"));
+		try {
+			CaffeineCacheProvider.toCaffeineSpec("refreshAfterWrite=1m");
+			fail("Refreshing is not supported");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// Guava specific options are accepted by the Caffeine provider
+		CacheProvider provider = CacheProvider.forName(CaffeineCacheProvider.NAME);
+		InstrumentedCache<String, String> cache = provider.createCache("maximumSize=10,concurrencyLevel=4,recordStats");
+		cache.put("a", "b");
+		assertEquals("b", cache.get("a").value);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownProviderTest() {
+		CacheProvider.forName("unknown");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void refreshSpecTest() {
+		new SailCaches().setSpec(NumerateWebSail.PROPERTY_CACHE, "maximumSize=10,refreshAfterWrite=1m");
+	}
+}
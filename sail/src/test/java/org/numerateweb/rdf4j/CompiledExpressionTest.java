@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URIs;
+import org.junit.Test;
+import org.numerateweb.math.model.OMObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompiledExpressionTest {
+	static final String NS = "http://example.org/";
+	static final String ARITH1 = "http://www.openmath.org/cd/arith1#";
+
+	static final IReference a = URIs.createURI(NS + "a");
+	static final IReference b = URIs.createURI(NS + "b");
+	static final IReference c = URIs.createURI(NS + "c");
+
+	static OMObject apply(String symbol, OMObject... args) {
+		Object[] oma = new Object[args.length + 1];
+		oma[0] = new OMObject(OMObject.Type.OMS, URIs.createURI(ARITH1 + symbol));
+		System.arraycopy(args, 0, oma, 1, args.length);
+		return new OMObject(OMObject.Type.OMA, oma);
+	}
+
+	static OMObject ref(IReference property) {
+		return new OMObject(OMObject.Type.OMR, property);
+	}
+
+	static OMObject f(double value) {
+		return new OMObject(OMObject.Type.OMF, value);
+	}
+
+	static OMObject i(long value) {
+		return new OMObject(OMObject.Type.OMI, BigInteger.valueOf(value));
+	}
+
+	static CompiledExpression.ValueResolver resolver(Map<IReference, Double> values) {
+		return (subject, property) -> values.get(property);
+	}
+
+	@Test
+	public void naryTest() {
+		Map<IReference, Double> values = Map.of(a, 1.5, b, 2.25, c, -4.0);
+		CompiledExpression sum = CompiledExpression.compile(apply("plus", ref(a), ref(b), ref(c), f(0.5)));
+		assertEquals(1.5 + 2.25 + -4.0 + 0.5, sum.evaluate("s", resolver(values)), 0);
+		CompiledExpression product = CompiledExpression.compile(apply("times", ref(a), ref(b), ref(c)));
+		assertEquals(1.5 * 2.25 * -4.0, product.evaluate("s", resolver(values)), 0);
+
+		// only sums and products are folded
+		assertNull(CompiledExpression.compile(apply("minus", ref(a), ref(b), ref(c))));
+		assertNull(CompiledExpression.compile(apply("divide", ref(a), ref(b), ref(c))));
+		CompiledExpression difference = CompiledExpression.compile(apply("minus", ref(a), ref(b)));
+		assertEquals(1.5 - 2.25, difference.evaluate("s", resolver(values)), 0);
+	}
+
+	@Test
+	public void unaryMinusTest() {
+		Map<IReference, Double> values = Map.of(a, 1.5, b, 2.0);
+		CompiledExpression negated = CompiledExpression.compile(apply("unary_minus",
+				apply("times", ref(a), ref(b))));
+		assertEquals(-3.0, negated.evaluate("s", resolver(values)), 0);
+		assertNull(CompiledExpression.compile(apply("unary_minus", ref(a), ref(b))));
+	}
+
+	@Test
+	public void referenceTest() {
+		List<Object> subjects = new ArrayList<>();
+		CompiledExpression expression = CompiledExpression.compile(apply("power", ref(a), i(2)));
+		assertFalse(expression.isFloatingPoint());
+		assertEquals(9.0, expression.evaluate("s", (subject, property) -> {
+			subjects.add(subject);
+			assertEquals(a, property);
+			return 3.0;
+		}), 0);
+		assertEquals(List.of("s"), subjects);
+		assertTrue(CompiledExpression.compile(apply("plus", ref(a), f(1))).isFloatingPoint());
+
+		// integer arithmetic is left to the interpreter
+		assertNull(CompiledExpression.compile(apply("plus", i(1), i(2))));
+		assertNotNull(CompiledExpression.compile(apply("plus", i(1), f(2))));
+	}
+
+	@Test
+	public void nonFiniteTest() {
+		Map<IReference, Double> values = Map.of(a, 1.0, b, 0.0, c, -4.0);
+		CompiledExpression[] expressions = {
+				CompiledExpression.compile(apply("divide", ref(a), ref(b))),
+				CompiledExpression.compile(apply("divide", ref(b), ref(b))),
+				CompiledExpression.compile(apply("root", ref(c), i(2)))
+		};
+		for (CompiledExpression expression : expressions) {
+			try {
+				expression.evaluate("s", resolver(values));
+				fail("Non-finite results must be left to the interpreter");
+			} catch (CompiledExpression.UnsupportedValueException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void toDoubleTest() {
+		assertEquals(1.5, CompiledExpression.toDouble(1.5), 0);
+		assertEquals(0.25, CompiledExpression.toDouble(0.25f), 0);
+		assertEquals(3.0, CompiledExpression.toDouble(3), 0);
+		assertEquals(-7.0, CompiledExpression.toDouble(-7L), 0);
+		assertEquals(42.0, CompiledExpression.toDouble((short) 42), 0);
+		assertEquals(1e15, CompiledExpression.toDouble(BigInteger.TEN.pow(15)), 0);
+		for (Object value : new Object[]{(1L << 53) + 1, BigInteger.TEN.pow(20), new BigDecimal("0.1"), "1"}) {
+			try {
+				CompiledExpression.toDouble(value);
+				fail(value + " can not be represented exactly as double");
+			} catch (CompiledExpression.UnsupportedValueException e) {
+				// expected
+			}
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConstraintIndexTest {
+	static final String NS = "http://example.org/";
+	static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void subClassesTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			IRI a = vf.createIRI(NS + "A"), b = vf.createIRI(NS + "B"), c = vf.createIRI(NS + "C"),
+					d = vf.createIRI(NS + "D");
+			connection.begin();
+			connection.addStatement(b, RDFS.SUBCLASSOF, a);
+			connection.addStatement(c, RDFS.SUBCLASSOF, b);
+			// cycle
+			connection.addStatement(a, RDFS.SUBCLASSOF, c);
+			connection.addStatement(d, RDFS.SUBCLASSOF, vf.createIRI(NS + "E"));
+			connection.commit();
+
+			ConstraintIndex index = new ConstraintIndex();
+			index.ensureLoaded(connection);
+			assertEquals(Set.of(a, b, c), index.getSubClasses(b));
+			assertEquals(Set.of(d), index.getSubClasses(d));
+
+			// only the reloaded class is moved within the hierarchy
+			connection.begin();
+			connection.removeStatements(a, RDFS.SUBCLASSOF, c);
+			connection.commit();
+			index.reload(connection, a);
+			assertEquals(Set.of(b, c), index.getSubClasses(b));
+			assertEquals(Set.of(a, b, c), index.getSubClasses(a));
+		} finally {
+			store.shutDown();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.commons.util.Pair;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URIs;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest {
+	static final String NS = "http://example.org/";
+	static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	Pair<Object, IReference> node(String resource, String property) {
+		return new Pair<>(vf.createIRI(NS + resource), URIs.createURI(NS + property));
+	}
+
+	@Test
+	public void topologicalOrderTest() {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> total = node("rectangles", "area");
+		Pair<Object, IReference> area1 = node("rect1", "area");
+		Pair<Object, IReference> area2 = node("rect2", "area");
+		Pair<Object, IReference> a1 = node("rect1", "a");
+		Pair<Object, IReference> a2 = node("rect2", "a");
+		graph.add(total, area1);
+		graph.add(total, area2);
+		graph.add(area1, a1);
+		graph.add(area2, a2);
+
+		List<Pair<Object, IReference>> order = graph.topologicalOrder(Set.of(total, area1, area2, a1, a2));
+		assertEquals(5, order.size());
+		assertTrue(order.indexOf(a1) < order.indexOf(area1));
+		assertTrue(order.indexOf(a2) < order.indexOf(area2));
+		assertTrue(order.indexOf(area1) < order.indexOf(total));
+		assertTrue(order.indexOf(area2) < order.indexOf(total));
+		assertEquals(Set.of(area1), graph.getDependents(a1));
+
+		graph.removeDependencies(area1);
+		assertTrue(graph.getDependents(a1).isEmpty());
+	}
+
+	@Test
+	public void propagateTest() {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> total = node("rectangles", "area");
+		Pair<Object, IReference> area = node("rect1", "area");
+		Pair<Object, IReference> a = node("rect1", "a");
+		Pair<Object, IReference> b = node("rect1", "b");
+		graph.add(area, a);
+		graph.add(total, area);
+		// the deeper dependent is also scheduled directly by the changed node
+		graph.add(total, a);
+		graph.add(b, a);
+
+		List<Pair<Object, IReference>> updated = new ArrayList<>();
+		graph.propagate(Set.of(a), node -> {
+			updated.add(node);
+			// b does not change which cuts off the propagation
+			return !node.equals(b);
+		});
+		assertEquals(4, updated.size());
+		assertEquals(a, updated.get(0));
+		// the intermediate node is updated before its dependent and each node is updated once
+		assertTrue(updated.indexOf(area) < updated.indexOf(total));
+		assertEquals(Set.of(a, b, area, total), new HashSet<>(updated));
+
+		updated.clear();
+		graph.propagate(Set.of(a), node -> {
+			updated.add(node);
+			return !node.equals(area);
+		});
+		// total is updated as it directly depends on a
+		assertEquals(Set.of(a, b, area, total), new HashSet<>(updated));
+
+		updated.clear();
+		graph.propagate(Set.of(b), node -> {
+			updated.add(node);
+			return false;
+		});
+		assertEquals(List.of(b), updated);
+	}
+
+	@Test
+	public void propagateNewDependencyTest() {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> a = node("r", "a");
+		Pair<Object, IReference> b = node("r", "b");
+		Pair<Object, IReference> c = node("r", "c");
+		graph.add(b, a);
+
+		List<Pair<Object, IReference>> updated = new ArrayList<>();
+		graph.propagate(Set.of(a, c), node -> {
+			updated.add(node);
+			if (node.equals(b)) {
+				// b reads c for the first time, possibly before c has been updated
+				graph.add(b, c);
+			}
+			return true;
+		});
+		// b is updated again if c is updated after it
+		assertEquals(updated.lastIndexOf(b), updated.size() - 1);
+		assertTrue(updated.lastIndexOf(b) > updated.indexOf(c));
+	}
+
+	@Test
+	public void propagateCycleTest() {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> a = node("r", "a");
+		Pair<Object, IReference> b = node("r", "b");
+		graph.add(a, b);
+		graph.add(b, a);
+
+		List<Pair<Object, IReference>> updated = new ArrayList<>();
+		graph.propagate(Set.of(a), node -> {
+			updated.add(node);
+			return true;
+		});
+		// propagation terminates for cycles
+		assertEquals(Set.of(a, b), new HashSet<>(updated));
+		assertEquals(2, updated.size());
+	}
+
+	@Test
+	public void cycleTest() {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> a = node("r", "a");
+		Pair<Object, IReference> b = node("r", "b");
+		Pair<Object, IReference> c = node("r", "c");
+		graph.add(a, b);
+		graph.add(b, a);
+		graph.add(c, a);
+
+		// cyclic nodes are still returned
+		List<Pair<Object, IReference>> order = graph.topologicalOrder(Set.of(a, b, c));
+		assertEquals(3, order.size());
+		assertTrue(order.containsAll(Set.of(a, b, c)));
+	}
+
+	@Test
+	public void writeAndReadTest() throws IOException {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> area = node("rect1", "area");
+		Pair<Object, IReference> a = node("rect1", "a");
+		Pair<Object, IReference> blank = new Pair<>(vf.createBNode("b1"), URIs.createURI(NS + "a"));
+		graph.add(area, a);
+		graph.add(area, blank);
+
+		File file = tempFolder.newFile();
+		graph.write(file, 42L);
+
+		DependencyGraph readGraph = new DependencyGraph();
+		assertEquals(42L, readGraph.read(file, vf));
+		assertEquals(Set.of(a, blank), readGraph.getDependencies(area));
+		assertEquals(Set.of(area), readGraph.getDependents(blank));
+		assertEquals(Set.of(URIs.createURI(NS + "area"), URIs.createURI(NS + "a")),
+				readGraph.getProperties(vf.createIRI(NS + "rect1")));
+	}
+
+	@Test
+	public void removeResourceTest() throws IOException {
+		DependencyGraph graph = new DependencyGraph();
+		Pair<Object, IReference> total = node("rectangles", "area");
+		Pair<Object, IReference> area = node("rect1", "area");
+		Pair<Object, IReference> a = node("rect1", "a");
+		Pair<Object, IReference> otherArea = node("rect2", "area");
+		Pair<Object, IReference> otherA = node("rect2", "a");
+		graph.add(total, area);
+		graph.add(area, a);
+		graph.add(otherArea, otherA);
+
+		// rect1.area is still used by the total area
+		assertEquals(1, graph.removeResource(vf.createIRI(NS + "rect1")));
+		assertEquals(Set.of(URIs.createURI(NS + "area")), graph.getProperties(vf.createIRI(NS + "rect1")));
+		assertEquals(Set.of(), graph.getDependencies(area));
+		assertEquals(Set.of(area), graph.getDependencies(total));
+
+		assertEquals(2, graph.removeResource(vf.createIRI(NS + "rect2")));
+		assertEquals(Set.of(), graph.getProperties(vf.createIRI(NS + "rect2")));
+		assertEquals(Set.of(), graph.getDependents(otherA));
+
+		// the ids of the removed nodes are reused
+		Pair<Object, IReference> b = node("rect3", "b");
+		graph.add(b, a);
+		assertEquals(Set.of(b), graph.getDependents(a));
+
+		// removed nodes are not written
+		File file = tempFolder.newFile();
+		graph.write(file, 0L);
+		DependencyGraph readGraph = new DependencyGraph();
+		readGraph.read(file, vf);
+		assertEquals(Set.of(area), readGraph.getDependencies(total));
+		assertEquals(Set.of(a), readGraph.getDependencies(b));
+		assertEquals(Set.of(), readGraph.getProperties(vf.createIRI(NS + "rect2")));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import com.google.common.hash.HashCode;
+import net.enilink.komma.core.URIs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.numerateweb.math.model.OMObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExpressionStoreTest {
+	static final String NS = "http://example.org/";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void hashTest() {
+		HashCode hash = ExpressionStore.hash("@a * @b", Map.of("", NS, "ex", NS + "ex/"));
+		assertEquals(hash, ExpressionStore.hash("@a * @b", Map.of("ex", NS + "ex/", "", NS)));
+		// the same expression string may refer to other properties
+		assertNotEquals(hash, ExpressionStore.hash("@a * @b", Map.of("", NS + "other/")));
+		assertNotEquals(hash, ExpressionStore.hash("@a + @b", Map.of("", NS, "ex", NS + "ex/")));
+	}
+
+	@Test
+	public void writeAndReadTest() throws IOException {
+		OMObject expression = new OMObject(OMObject.Type.OMA,
+				OMObject.OMS("http://www.openmath.org/cd/arith1#times"),
+				new OMObject(OMObject.Type.OMR, URIs.createURI(NS + "a")),
+				new OMObject(OMObject.Type.OMI, BigInteger.TEN),
+				new OMObject(OMObject.Type.OMF, 0.5));
+		HashCode hash = ExpressionStore.hash("@a * 10 * 0.5", Map.of("", NS));
+		ExpressionStore store = new ExpressionStore();
+		store.put(hash, expression);
+		// arguments that can not be encoded
+		store.put(ExpressionStore.hash("other", Map.of()), new OMObject(OMObject.Type.OMSTR, new Object()));
+		assertEquals(1, store.size());
+
+		File file = tempFolder.newFile();
+		store.write(file);
+		ExpressionStore readStore = new ExpressionStore();
+		readStore.read(file);
+
+		OMObject read = readStore.get(hash);
+		assertNotNull(read);
+		assertEquals(OMObject.Type.OMA, read.getType());
+		Object[] args = read.getArgs();
+		assertEquals(4, args.length);
+		assertEquals(URIs.createURI("http://www.openmath.org/cd/arith1#times"), ((OMObject) args[0]).getArgs()[0]);
+		assertEquals(URIs.createURI(NS + "a"), ((OMObject) args[1]).getArgs()[0]);
+		assertEquals(BigInteger.TEN, ((OMObject) args[2]).getArgs()[0]);
+		assertEquals(0.5, ((OMObject) args[3]).getArgs()[0]);
+		assertNull(readStore.get(ExpressionStore.hash("other", Map.of())));
+	}
+
+	@Test
+	public void pruneTest() throws IOException {
+		HashCode hash1 = ExpressionStore.hash("@a", Map.of("", NS));
+		HashCode hash2 = ExpressionStore.hash("@b", Map.of("", NS));
+		ExpressionStore store = new ExpressionStore();
+		store.put(hash1, new OMObject(OMObject.Type.OMR, URIs.createURI(NS + "a")));
+		store.put(hash2, new OMObject(OMObject.Type.OMR, URIs.createURI(NS + "b")));
+		File file = tempFolder.newFile();
+		store.write(file);
+
+		// nothing is removed if no expression has been used
+		ExpressionStore readStore = new ExpressionStore();
+		readStore.read(file);
+		assertEquals(0, readStore.prune());
+		assertEquals(2, readStore.size());
+
+		// only the used expression is kept
+		assertNotNull(readStore.get(hash2));
+		readStore.write(file);
+		assertEquals(1, readStore.size());
+		ExpressionStore prunedStore = new ExpressionStore();
+		prunedStore.read(file);
+		assertEquals(1, prunedStore.size());
+		assertNull(prunedStore.get(hash1));
+		assertNotNull(prunedStore.get(hash2));
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URIs;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.OWL;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class GraphShardsTest {
+	static final String NS = "http://example.org/";
+	static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	@Test
+	public void readableGraphsTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			IRI g1 = vf.createIRI(NS + "g1"), g2 = vf.createIRI(NS + "g2"), g3 = vf.createIRI(NS + "g3");
+			connection.begin();
+			connection.addStatement(g1, OWL.IMPORTS, g2, g1);
+			connection.addStatement(g2, OWL.IMPORTS, g3, g2);
+			connection.addStatement(g3, OWL.IMPORTS, g1, g3);
+			connection.commit();
+
+			GraphShards shards = new GraphShards(new SailCaches());
+			GraphShards.Shard shard = shards.get(connection, g1);
+			assertArrayEquals(new IRI[]{g1, g2, g3}, shard.context);
+			assertEquals(Set.of(g1, g2, g3), shard.dataset.getDefaultGraphs());
+			assertSame(shard, shards.get(connection, g1));
+
+			GraphShards.Shard defaultShard = shards.get(connection, null);
+			assertEquals(0, defaultShard.context.length);
+			// the values of the shards are separated
+			IRI resource = vf.createIRI(NS + "r");
+			assertNotSame(shard.getOrCreateEntity(resource), defaultShard.getOrCreateEntity(resource));
+			assertSame(shard.getEntity(resource), shard.getOrCreateEntity(resource));
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void evictionAndInvalidationTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			SailCaches caches = new SailCaches();
+			caches.setSpec(NumerateWebSail.DATASET_CACHE, "maximumSize=1");
+			GraphShards shards = new GraphShards(caches);
+
+			IRI resource = vf.createIRI(NS + "r");
+			IReference a = URIs.createURI(NS + "a"), b = URIs.createURI(NS + "b");
+			GraphShards.Shard shard = shards.get(connection, null);
+			CachedEntity entity = new CachedEntity(shard.ids);
+			entity.put(null, a, 1.0);
+			entity.put(null, b, 2.0);
+			shard.putEntity(resource, entity);
+
+			// the graphs of the resource are unknown
+			shards.invalidate(Map.of(resource, Set.of(a)), r -> List.of());
+			assertNull(entity.get(null, a));
+			assertEquals(2.0, entity.get(null, b));
+			shards.invalidate(resource);
+			assertNull(shard.getEntity(resource));
+
+			// the least recently used shard is evicted
+			shards.get(connection, vf.createIRI(NS + "g1"));
+			assertNotSame(shard, shards.get(connection, null));
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void weightTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			SailCaches caches = new SailCaches();
+			caches.setSpec(NumerateWebSail.PROPERTY_CACHE, "maximumWeight=1200,concurrencyLevel=1");
+			GraphShards shards = new GraphShards(caches);
+			// the budget for values is shared by all shards
+			GraphShards.Shard otherShard = shards.get(connection, vf.createIRI(NS + "g1"));
+			GraphShards.Shard shard = shards.get(connection, null);
+
+			IRI r1 = vf.createIRI(NS + "r1"), r2 = vf.createIRI(NS + "r2");
+			otherShard.putEntity(r1, new CachedEntity(shard.ids));
+			CachedEntity entity = new CachedEntity(shard.ids);
+			shard.putEntity(r2, entity);
+			int weight = entity.weigh();
+			boolean grown = false;
+			for (int i = 0; i < 20; i++) {
+				grown |= entity.put(null, URIs.createURI(NS + "p" + i), (double) i);
+			}
+			assertTrue(grown);
+			assertTrue(entity.weigh() > weight);
+			assertNotNull(otherShard.getEntity(r1));
+
+			// the entity is weighed again and the entity of the other shard is evicted
+			shard.reweigh(r2, entity);
+			assertNull(otherShard.getEntity(r1));
+			assertSame(entity, shard.getEntity(r2));
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void idsTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			GraphShards shards = new GraphShards(new SailCaches());
+			GraphShards otherShards = new GraphShards(new SailCaches());
+			GraphShards.Shard shard = shards.get(connection, null);
+			IReference a = URIs.createURI(NS + "a");
+			CachedEntity entity = new CachedEntity(shard.ids);
+			entity.put(null, a, 1.0);
+			// the ids are not shared between sails
+			assertEquals(2, shard.ids.size());
+			assertEquals(0, otherShards.get(connection, null).ids.size());
+
+			shards.invalidateAll();
+			assertEquals(0, shard.ids.size());
+			// ids are not reused by new entities
+			CachedEntity newEntity = new CachedEntity(shards.get(connection, null).ids);
+			newEntity.put(null, URIs.createURI(NS + "b"), 2.0);
+			assertNull(entity.get(null, URIs.createURI(NS + "b")));
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void readingShardsTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			IRI g1 = vf.createIRI(NS + "g1"), g2 = vf.createIRI(NS + "g2"), g3 = vf.createIRI(NS + "g3");
+			connection.begin();
+			connection.addStatement(g1, OWL.IMPORTS, g2, g1);
+			connection.commit();
+
+			GraphShards shards = new GraphShards(new SailCaches());
+			IRI resource = vf.createIRI(NS + "r");
+			IReference a = URIs.createURI(NS + "a");
+			Map<GraphShards.Shard, CachedEntity> entities = new HashMap<>();
+			for (IRI graph : new IRI[]{g1, g2, g3, null}) {
+				GraphShards.Shard shard = shards.get(connection, graph);
+				CachedEntity entity = new CachedEntity(shard.ids);
+				entity.put(g2, a, 1.0);
+				shard.putEntity(resource, entity);
+				entities.put(shard, entity);
+			}
+
+			// the resource is typed in g2 which is readable by g1 and g2
+			shards.invalidate(Map.of(resource, Set.of(a)), r -> List.of(g2));
+			assertNull(entities.get(shards.get(connection, g1)).get(g2, a));
+			assertNull(entities.get(shards.get(connection, g2)).get(g2, a));
+			assertNull(entities.get(shards.get(connection, null)).get(g2, a));
+			assertEquals(1.0, entities.get(shards.get(connection, g3)).get(g2, a));
+		} finally {
+			store.shutDown();
+		}
+	}
+
+	@Test
+	public void importChangeTest() {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			IRI g1 = vf.createIRI(NS + "g1"), g2 = vf.createIRI(NS + "g2"), g3 = vf.createIRI(NS + "g3"),
+					g4 = vf.createIRI(NS + "g4");
+			connection.begin();
+			connection.addStatement(g1, OWL.IMPORTS, g2, g1);
+			connection.addStatement(g3, OWL.IMPORTS, g4, g3);
+			connection.commit();
+
+			GraphShards shards = new GraphShards(new SailCaches());
+			GraphShards.Shard shard1 = shards.get(connection, g1);
+			GraphShards.Shard shard3 = shards.get(connection, g3);
+
+			connection.begin();
+			connection.addStatement(g2, OWL.IMPORTS, g4, g2);
+			connection.commit();
+
+			// only the closure of g1 depends on the imports of g2
+			assertEquals(Set.of(g1), shards.updateImports(connection, Set.of(g2)));
+			assertArrayEquals(new IRI[]{g1, g2, g4}, shards.get(connection, g1).context);
+			assertNotSame(shard1, shards.get(connection, g1));
+			assertSame(shard3, shards.get(connection, g3));
+
+			// unchanged imports do not affect any shards
+			assertEquals(Set.of(), shards.updateImports(connection, Set.of(g2, g4)));
+		} finally {
+			store.shutDown();
+		}
+	}
+}
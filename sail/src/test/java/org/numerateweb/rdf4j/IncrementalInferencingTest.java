@@ -24,13 +24,21 @@ import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.SailConnection;
 import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.numerateweb.math.rdf.rules.NWRULES;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class IncrementalInferencingTest {
@@ -43,6 +51,9 @@ public class IncrementalInferencingTest {
 	static final IRI onProperty = vf.createIRI(nw + "onProperty");
 	static final IRI expressionString = vf.createIRI(nw + "expressionString");
 
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
 	protected NumerateWebSail createSail() {
 		return new NumerateWebSail(new MemoryStore());
 	}
@@ -401,4 +412,110 @@ public class IncrementalInferencingTest {
 
 		repository.shutDown();
 	}
+
+	@Test
+	public void rescheduledNodeTest() {
+		NumerateWebSail sail = createSail();
+		Repository repository = new SailRepository(sail);
+
+		IRI rectanglesClass = vf.createIRI(NS + "Rectangles");
+		IRI rectangleProperty = vf.createIRI(NS + "rectangle");
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI aProperty = vf.createIRI(NS + "a");
+		Resource rectangles = vf.createIRI(NS + "rectangles");
+		Resource r = vf.createIRI(NS + "rect");
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			createPrefixes(connection);
+			createConstraint(connection, rectanglesClass, areaProperty, "sum(@@rectangle, $r -> @area($r))");
+			createConstraint(connection, rectangleClass, areaProperty, "@a * @b");
+			connection.add(rectangles, RDF.TYPE, rectanglesClass);
+			connection.add(rectangles, rectangleProperty, vf.createIRI(NS + "other"));
+			connection.add(vf.createIRI(NS + "other"), RDF.TYPE, rectangleClass);
+			connection.add(vf.createIRI(NS + "other"), aProperty, vf.createLiteral(1));
+			connection.add(vf.createIRI(NS + "other"), vf.createIRI(NS + "b"), vf.createLiteral(1));
+			connection.commit();
+
+			// the nodes of this rectangle are created after those of the rectangles
+			connection.begin();
+			connection.add(r, RDF.TYPE, rectangleClass);
+			connection.add(r, aProperty, vf.createLiteral(2));
+			connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(3));
+			connection.commit();
+
+			// forms a diamond rect.a -> rect.area -> rectangles.area <- rectangles.rectangle, the sum is
+			// evaluated before the area of the rectangle and is computed again in a later round after the edge
+			// from rect.area has been recorded
+			connection.begin();
+			connection.add(rectangles, rectangleProperty, r);
+			connection.remove(r, aProperty, null);
+			connection.add(r, aProperty, vf.createLiteral(5));
+			connection.commit();
+
+			try (RepositoryResult<Statement> result = connection.getStatements(rectangles, areaProperty, null)) {
+				List<Value> values = result.stream().map(st -> st.getObject()).collect(Collectors.toList());
+				assertEquals(1, values.size());
+				assertEquals(1 + 15, ((Literal) values.get(0)).intValue());
+			}
+		}
+		repository.shutDown();
+	}
+
+	@Test
+	public void changedStoreRestartTest() throws IOException {
+		File dataDir = tempFolder.newFolder();
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI aProperty = vf.createIRI(NS + "a");
+		Resource r = vf.createIRI(NS + "rect");
+
+		Repository repository = new SailRepository(new NumerateWebSail(new MemoryStore(dataDir)));
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			createPrefixes(connection);
+			createConstraint(connection, rectangleClass, areaProperty, "@a * @b");
+			connection.add(r, RDF.TYPE, rectangleClass);
+			connection.add(r, aProperty, vf.createLiteral(2));
+			connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(3));
+			connection.commit();
+		}
+		// stores the dependency index
+		repository.shutDown();
+
+		// the index is used if the store is unchanged
+		NumerateWebSail sail = new NumerateWebSail(new MemoryStore(dataDir));
+		sail.init();
+		assertTrue(sail.initialInferencingDone);
+		sail.shutDown();
+
+		// change the store while the sail is not running
+		MemoryStore store = new MemoryStore(dataDir);
+		store.init();
+		try (SailConnection connection = store.getConnection()) {
+			connection.begin();
+			connection.removeStatements(r, aProperty, null);
+			connection.addStatement(r, aProperty, vf.createLiteral(5));
+			connection.commit();
+		}
+		store.shutDown();
+
+		// the outdated dependency index is discarded and all values are recomputed with the next change
+		sail = new NumerateWebSail(new MemoryStore(dataDir));
+		repository = new SailRepository(sail);
+		repository.init();
+		assertFalse(sail.initialInferencingDone);
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin();
+			connection.add(vf.createIRI(NS + "other"), RDF.TYPE, vf.createIRI(NS + "Other"));
+			connection.commit();
+
+			try (RepositoryResult<Statement> result = connection.getStatements(r, areaProperty, null)) {
+				Optional<Value> v = result.stream().map(st -> st.getObject()).findFirst();
+				assertTrue(v.isPresent());
+				assertEquals(15, ((Literal) v.get()).intValue());
+			}
+		}
+		repository.shutDown();
+	}
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InferredStatementBufferTest {
+	static final String NS = "http://example.org/";
+	static final ValueFactory vf = SimpleValueFactory.getInstance();
+
+	final IRI r = vf.createIRI(NS + "r"), p = vf.createIRI(NS + "p"), g = vf.createIRI(NS + "g");
+
+	MemoryStore store;
+	InferencerConnection connection;
+
+	@Before
+	public void setUp() {
+		store = new MemoryStore();
+		store.init();
+		connection = (InferencerConnection) store.getConnection();
+		connection.begin();
+	}
+
+	@After
+	public void tearDown() {
+		connection.commit();
+		connection.close();
+		store.shutDown();
+	}
+
+	long size() {
+		return connection.getStatements(null, null, null, true).stream().count();
+	}
+
+	@Test
+	public void cancellationTest() {
+		connection.addInferredStatement(r, p, vf.createLiteral(1), g);
+
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection);
+		buffer.removeInferredStatement(r, p, null);
+		buffer.addInferredStatement(r, p, vf.createLiteral(2), g);
+		buffer.addInferredStatement(r, p, vf.createLiteral(3), g);
+		// cancels the buffered addition of 3
+		buffer.removeInferredStatement(r, p, vf.createLiteral(3), g);
+		buffer.removeInferredStatement(r, p, vf.createLiteral(4));
+		// cancels the buffered removal of 4
+		buffer.addInferredStatement(r, p, vf.createLiteral(4));
+
+		// reads are not affected before flushing
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(1), true, g));
+		buffer.flushInferred();
+		assertFalse(connection.hasStatement(r, p, vf.createLiteral(1), true));
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(2), true, g));
+		assertFalse(connection.hasStatement(r, p, vf.createLiteral(3), true));
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(4), true, (IRI) null));
+		assertEquals(2, size());
+	}
+
+	@Test
+	public void unchangedTest() {
+		connection.addInferredStatement(r, p, vf.createLiteral(1), g);
+
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection);
+		connection.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		assertTrue(buffer.hasChanges(r, p));
+		buffer.addInferredStatement(r, p, vf.createLiteral(1), g);
+		// the removal and the addition cancel each other
+		assertFalse(buffer.hasChanges(r, p));
+
+		connection.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(2), g);
+		assertTrue(buffer.hasChanges(r, p));
+		buffer.flushInferred();
+		assertEquals(1, buffer.getFlushCount());
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(2), true, g));
+		assertEquals(1, size());
+	}
+
+	@Test
+	public void patternRemovalTest() {
+		connection.addInferredStatement(r, p, vf.createLiteral(1), g);
+		connection.addInferredStatement(r, p, vf.createLiteral(1.0), (IRI) null);
+
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection);
+		// e.g. the removal of the values of properties that are affected by a schema change
+		buffer.removeInferredStatement(r, p, null);
+		assertTrue(buffer.hasChanges(r, p));
+		connection.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(1), g);
+		buffer.addInferredStatement(r, p, vf.createLiteral(1.0000001));
+		buffer.keepExisting(r, p, (existing, value) ->
+				Math.abs(((Literal) existing).doubleValue() - ((Literal) value).doubleValue()) < 1e-6);
+		// the values are added again after the removal has been written
+		assertTrue(buffer.hasChanges(r, p));
+		buffer.flushInferred();
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(1), true, g));
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(1.0000001), true, (IRI) null));
+		assertEquals(2, size());
+	}
+
+	@Test
+	public void keepExistingTest() {
+		connection.addInferredStatement(r, p, vf.createLiteral(1.0), g);
+
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection);
+		connection.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(1.0000001), g);
+		buffer.keepExisting(r, p, (existing, value) ->
+				Math.abs(((Literal) existing).doubleValue() - ((Literal) value).doubleValue()) < 1e-6);
+		assertFalse(buffer.hasChanges(r, p));
+		buffer.flushInferred();
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(1.0), true, g));
+		assertEquals(1, size());
+	}
+
+	@Test
+	public void batchTest() {
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection, 10);
+		for (int i = 0; i < 25; i++) {
+			buffer.addInferredStatement(r, p, vf.createLiteral(i));
+		}
+		assertEquals(20, size());
+		buffer.flushInferred();
+		assertEquals(25, size());
+	}
+
+	@Test
+	public void overwriteTest() {
+		connection.addInferredStatement(r, p, vf.createLiteral(1), g);
+		InferredStatementBuffer buffer = new InferredStatementBuffer(connection);
+
+		// the first evaluation replaces the existing value
+		buffer.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(2), g);
+		assertTrue(buffer.hasChanges(r, p));
+
+		// the second evaluation still reads the existing value and drops its earlier result
+		assertEquals(1, buffer.cancelAdditions(r, p));
+		buffer.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(3), g);
+		assertTrue(buffer.hasChanges(r, p));
+		buffer.flushInferred();
+		assertEquals(1, size());
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(3), true, g));
+
+		// a second evaluation that restores the existing value leaves no changes
+		buffer.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(4), g);
+		buffer.cancelAdditions(r, p);
+		buffer.getStatements(r, p, null, true).stream().forEach(buffer::removeExisting);
+		buffer.addInferredStatement(r, p, vf.createLiteral(3), g);
+		assertFalse(buffer.hasChanges(r, p));
+		buffer.flushInferred();
+		assertEquals(1, size());
+		assertTrue(connection.hasStatement(r, p, vf.createLiteral(3), true, g));
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.common.iteration.Iterations;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
+import org.eclipse.rdf4j.model.*;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.inferencer.InferencerConnection;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ParallelInferencingTest extends BasicInferencingTest {
+	@Override
+	protected NumerateWebSail createSail() {
+		NumerateWebSail sail = new NumerateWebSail(new MemoryStore());
+		sail.setInferencingThreads(4);
+		return sail;
+	}
+
+	/**
+	 * Infers the areas of many independent groups of rectangles that all depend on a shared scale.
+	 */
+	Set<Statement> inferAreas(NumerateWebSail sail) {
+		Repository repository = new SailRepository(sail);
+		ValueFactory vf = repository.getValueFactory();
+		IRI groupClass = vf.createIRI(NS + "Group");
+		IRI rectangleClass = vf.createIRI(NS + "Rectangle");
+		IRI scaleClass = vf.createIRI(NS + "Scale");
+		IRI areaProperty = vf.createIRI(NS + "area");
+		IRI rectangleProperty = vf.createIRI(NS + "rectangle");
+		IRI scaleProperty = vf.createIRI(NS + "scale");
+		IRI factorProperty = vf.createIRI(NS + "factor");
+		IRI scale = vf.createIRI(NS + "scale");
+		try (RepositoryConnection connection = repository.getConnection()) {
+			connection.begin(IsolationLevels.NONE);
+			createPrefixes(connection);
+			createConstraint(connection, scaleClass, factorProperty, "@base * 2");
+			createConstraint(connection, groupClass, areaProperty, "sum(@@rectangle, $r -> @area($r))");
+			createConstraint(connection, rectangleClass, areaProperty, "@a * @b * @factor(@@scale)");
+			connection.add(scale, RDF.TYPE, scaleClass);
+			connection.add(scale, vf.createIRI(NS + "base"), vf.createLiteral(3));
+
+			for (int g = 0; g < 50; g++) {
+				Resource group = vf.createIRI(NS + "group" + g);
+				connection.add(group, RDF.TYPE, groupClass);
+				for (int i = 0; i < 5; i++) {
+					Resource r = vf.createIRI(NS + "rect" + g + "_" + i);
+					connection.add(r, RDF.TYPE, rectangleClass);
+					connection.add(r, vf.createIRI(NS + "a"), vf.createLiteral(g));
+					connection.add(r, vf.createIRI(NS + "b"), vf.createLiteral(i));
+					connection.add(r, scaleProperty, scale);
+					connection.add(group, rectangleProperty, r);
+				}
+			}
+			connection.commit();
+
+			return connection.getStatements(null, areaProperty, null).stream()
+					.collect(Collectors.toSet());
+		} finally {
+			repository.shutDown();
+		}
+	}
+
+	@Test
+	public void independentComponentsTest() {
+		NumerateWebSail singleThreaded = new NumerateWebSail(new MemoryStore());
+		singleThreaded.setInferencingThreads(1);
+		Set<Statement> expected = inferAreas(singleThreaded);
+		// 50 groups with 5 rectangles each
+		assertEquals(300, expected.size());
+		ValueFactory vf = SimpleValueFactory.getInstance();
+		assertEquals(1, expected.stream().filter(stmt -> stmt.getSubject().equals(vf.createIRI(NS + "group2")) &&
+				((Literal) stmt.getObject()).doubleValue() == 2 * (0 + 1 + 2 + 3 + 4) * 6).count());
+
+		assertEquals(expected, inferAreas(createSail()));
+	}
+
+	@Test
+	public void concurrentReadsTest() throws Exception {
+		MemoryStore store = new MemoryStore();
+		store.init();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try (InferencerConnection connection = (InferencerConnection) store.getConnection()) {
+			ValueFactory vf = store.getValueFactory();
+			IRI r = vf.createIRI(NS + "r");
+			connection.begin();
+			connection.addStatement(r, RDF.TYPE, vf.createIRI(NS + "Rectangle"));
+			connection.addStatement(r, vf.createIRI(NS + "a"), vf.createLiteral(2));
+
+			ReadWriteLock lock = new ReentrantReadWriteLock();
+			ParallelInferencer.LockingConnection locking = new ParallelInferencer.LockingConnection(connection,
+					lock);
+			try (CloseableIteration<? extends Statement, SailException> stmts = locking.getStatements(r, null,
+					null, false)) {
+				assertTrue(stmts.hasNext());
+				stmts.next();
+				// other workers read while the results are streamed but changes are not applied
+				assertTrue(executor.submit(() -> locking.hasStatement(r, RDF.TYPE, null, false))
+						.get(10, TimeUnit.SECONDS));
+				assertFalse(lock.writeLock().tryLock());
+			}
+			assertTrue(lock.writeLock().tryLock());
+			lock.writeLock().unlock();
+
+			// exhausted iterations release the lock
+			CloseableIteration<? extends Statement, SailException> stmts = locking.getStatements(r, null, null,
+					false);
+			assertEquals(2, Iterations.asList(stmts).size());
+			assertTrue(lock.writeLock().tryLock());
+			lock.writeLock().unlock();
+			connection.rollback();
+		} finally {
+			executor.shutdownNow();
+			store.shutDown();
+		}
+	}
+}
+
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j;
+
+import org.eclipse.rdf4j.common.iteration.CloseableIteration;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.Dataset;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.algebra.TupleExpr;
+import org.eclipse.rdf4j.sail.SailConnection;
+import org.eclipse.rdf4j.sail.SailException;
+import org.eclipse.rdf4j.sail.helpers.SailConnectionWrapper;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.Test;
+import org.numerateweb.math.model.OMObject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class Rdf4jModelAccessTest {
+	static final String NS = "http://example.org/";
+
+	/**
+	 * Counts the evaluated queries.
+	 */
+	static class CountingConnection extends SailConnectionWrapper {
+		int queries = 0;
+
+		CountingConnection(SailConnection connection) {
+			super(connection);
+		}
+
+		@Override
+		public CloseableIteration<? extends BindingSet, QueryEvaluationException> evaluate(TupleExpr tupleExpr,
+				Dataset dataset, BindingSet bindings, boolean includeInferred) throws SailException {
+			queries++;
+			return super.evaluate(tupleExpr, dataset, bindings, includeInferred);
+		}
+	}
+
+	@Test
+	public void parseExpressionTest() {
+		NumerateWebSail sail = new NumerateWebSail(new MemoryStore());
+		sail.init();
+		try (SailConnection connection = sail.getConnection()) {
+			ValueFactory vf = sail.getValueFactory();
+			IRI mathObj = vf.createIRI(NS + "expression");
+			IRI operator = vf.createIRI(Rdf4jModelAccess.MATH_NAMESPACE + "operator");
+			Resource arguments = vf.createBNode();
+			connection.begin();
+			connection.addStatement(mathObj, RDF.TYPE, vf.createIRI(Rdf4jModelAccess.MATH_NAMESPACE + "Application"));
+			connection.addStatement(mathObj, operator, vf.createIRI("http://www.openmath.org/cd/arith1#plus"));
+			connection.addStatement(mathObj, vf.createIRI(Rdf4jModelAccess.MATH_NAMESPACE + "arguments"),
+					arguments);
+			connection.addStatement(arguments, RDF.FIRST, vf.createLiteral(1));
+			connection.addStatement(arguments, RDF.REST, RDF.NIL);
+			connection.commit();
+
+			CountingConnection counting = new CountingConnection(connection);
+			EvaluationContext ctx = new EvaluationContext(counting);
+			OMObject parsed = sail.modelAccess.parseExpression(ctx, mathObj);
+			assertEquals(1, counting.queries);
+			// the statements are not read again as long as they are unchanged
+			assertSame(parsed, sail.modelAccess.parseExpression(ctx, mathObj));
+			assertSame(parsed, sail.modelAccess.parseExpression(new EvaluationContext(counting), mathObj));
+			assertEquals(1, counting.queries);
+
+			// unrelated changes keep the parsed expressions
+			connection.begin();
+			connection.addStatement(vf.createIRI(NS + "r"), vf.createIRI(NS + "a"), vf.createLiteral(2));
+			connection.commit();
+			sail.modelAccess.parseExpression(ctx, mathObj);
+			assertEquals(1, counting.queries);
+
+			connection.begin();
+			connection.removeStatements(mathObj, operator, null);
+			connection.addStatement(mathObj, operator, vf.createIRI("http://www.openmath.org/cd/arith1#times"));
+			connection.commit();
+			sail.modelAccess.parseExpression(ctx, mathObj);
+			assertEquals(2, counting.queries);
+		} finally {
+			sail.shutDown();
+		}
+	}
+}
@@ -17,24 +17,34 @@ package org.numerateweb.rdf4j.benchmark;
 
 import org.eclipse.rdf4j.sail.NotifyingSail;
 import org.numerateweb.rdf4j.NumerateWebSail;
-import org.openjdk.jmh.annotations.Benchmark;
-import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
 
 /**
- * Benchmarks full inferencing performance.
+ * Benchmarks the initial load of data with full inferencing.
+ * <p>
+ * The instances of different classes are independent of each other, hence they are evaluated in parallel
+ * if more than one inferencing thread is used.
  */
 public class FullInferencingBenchmark extends InferencingBenchmarkBase {
 
+	@Param({"1", "4"})
+	int inferencingThreads;
+
 	public static void main(String[] args) throws RunnerException {
-		Options opt = new OptionsBuilder()
-				.include("FullInferencingBenchmark") // adapt to control which benchmark tests to run
-				.forks(1)
-				.build();
+		run("FullInferencingBenchmark", "full-inferencing");
+	}
+
+	@Setup(Level.Invocation)
+	public void setUp() {
+		openRepository();
+	}
 
-		new Runner(opt).run();
+	@TearDown(Level.Invocation)
+	public void tearDown() throws IOException {
+		closeRepository();
 	}
 
 	@Benchmark
@@ -46,6 +56,7 @@ public class FullInferencingBenchmark extends InferencingBenchmarkBase {
 	protected NumerateWebSail createInferencer(NotifyingSail store) {
 		NumerateWebSail inferencer = new NumerateWebSail(store);
 		inferencer.setIncrementalInference(false);
+		inferencer.setInferencingThreads(inferencingThreads);
 		return inferencer;
 	}
 }
\ No newline at end of file
@@ -20,18 +20,18 @@ import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.sail.NotifyingSail;
 import org.numerateweb.rdf4j.NumerateWebSail;
-import org.openjdk.jmh.annotations.Benchmark;
-import org.openjdk.jmh.annotations.Param;
-import org.openjdk.jmh.infra.BenchmarkParams;
-import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.RunnerException;
-import org.openjdk.jmh.runner.options.Options;
-import org.openjdk.jmh.runner.options.OptionsBuilder;
 
+import java.io.IOException;
 import java.util.Random;
 
 /**
- * Benchmarks incremental inferencing performance.
+ * Benchmarks incremental inferencing performance for transactions that change many resources and for
+ * changes of the leaves or the roots of the aggregation trees.
+ * <p>
+ * The changes of leaves and roots do not depend on <code>modifyValuesPercent</code>, hence they may be run
+ * with a single value, e.g. <code>-p modifyValuesPercent=10</code>.
  */
 public class IncrementalInferencingBenchmark extends InferencingBenchmarkBase {
 
@@ -39,12 +39,7 @@ public class IncrementalInferencingBenchmark extends InferencingBenchmarkBase {
 	int modifyValuesPercent;
 
 	public static void main(String[] args) throws RunnerException {
-		Options opt = new OptionsBuilder()
-				.include("IncrementalInferencingBenchmark") // adapt to control which benchmark tests to run
-				.forks(1)
-				.build();
-
-		new Runner(opt).run();
+		run("IncrementalInferencingBenchmark", "incremental-inferencing");
 	}
 
 	@Benchmark
@@ -83,13 +78,36 @@ public class IncrementalInferencingBenchmark extends InferencingBenchmarkBase {
 		}
 	}
 
-	@Override
-	public void beforeClass(BenchmarkParams params) {
-		super.beforeClass(params);
+	@Setup(Level.Invocation)
+	public void setUp() {
+		openRepository();
 		addDataInOneTransaction();
 		System.gc();
 	}
 
+	@TearDown(Level.Invocation)
+	public void tearDown() throws IOException {
+		closeRepository();
+	}
+
+	/**
+	 * Changes the weight of a leaf which requires the recomputation of all its ancestors.
+	 */
+	@Benchmark
+	public void leafChange() {
+		Random rnd = new Random(1337);
+		updateWeight(randomLeaf(rnd), rnd);
+	}
+
+	/**
+	 * Changes the weight of a root which only requires the recomputation of the root.
+	 */
+	@Benchmark
+	public void rootChange() {
+		Random rnd = new Random(1337);
+		updateWeight(treeNode(rnd.nextInt(trees), ""), rnd);
+	}
+
 	@Override
 	protected NumerateWebSail createInferencer(NotifyingSail store) {
 		NumerateWebSail inferencer = new NumerateWebSail(store);
@@ -26,18 +26,30 @@ import org.eclipse.rdf4j.repository.sail.SailRepository;
 import org.eclipse.rdf4j.repository.sail.SailRepositoryConnection;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.lmdb.LmdbStore;
+import org.eclipse.rdf4j.sail.lmdb.config.LmdbStoreConfig;
 import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
 import org.numerateweb.rdf4j.NumerateWebSail;
 import org.openjdk.jmh.annotations.*;
-import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Benchmarks inferencing performance.
+ * <p>
+ * Subclasses open and close the repository via {@link #openRepository()} and {@link #closeRepository()}
+ * within their own setup methods, either for each invocation or once for each trial.
  */
 @State(Scope.Benchmark)
 @Warmup(iterations = 2)
@@ -62,19 +74,53 @@ public abstract class InferencingBenchmarkBase {
 	@Param({"5"})
 	int instancesPerClass;
 
+	@Param({"guava", "caffeine"})
+	String cacheProvider;
+
+	@Param({"memory", "native", "lmdb"})
+	String store;
+
+	/**
+	 * Number of trees whose nodes aggregate the values of their children.
+	 */
+	@Param({"10"})
+	int trees;
+
+	@Param({"4"})
+	int treeDepth;
+
+	@Param({"4"})
+	int fanIn;
+
+	/**
+	 * The function that aggregates the values of the children, either <code>sum</code> or <code>max</code>.
+	 */
+	@Param({"sum"})
+	String aggregate;
+
+	/**
+	 * If <code>true</code> then the first leaf of each tree has the root as child.
+	 */
+	@Param({"false"})
+	boolean cycles;
+
 	SailRepository repository;
 	SailRepositoryConnection connection;
 	File file;
 
-	void createConstraints(String ns, Resource targetClass) {
+	void createConstraint(String ns, Resource targetClass, IRI constraintProperty, String expression) {
 		ValueFactory vf = repository.getValueFactory();
 		String nw = "http://numerateweb.org/vocab/math/rules#";
-		IRI constraintClass = vf.createIRI(nw + "Constraint");
-		IRI constraint = vf.createIRI(nw + "constraint");
-		IRI onProperty = vf.createIRI(nw + "onProperty");
-		IRI expressionString = vf.createIRI(nw + "expressionString");
-		IRI prefixes = vf.createIRI("http://www.w3.org/ns/shacl#prefixes");
-		IRI prefixesResource = vf.createIRI(ns);
+		Resource constraintResource = vf.createBNode();
+		connection.add(targetClass, vf.createIRI(nw + "constraint"), constraintResource);
+		connection.add(constraintResource, RDF.TYPE, vf.createIRI(nw + "Constraint"));
+		connection.add(constraintResource, vf.createIRI(nw + "onProperty"), constraintProperty);
+		connection.add(constraintResource, vf.createIRI(nw + "expressionString"), vf.createLiteral(expression));
+		connection.add(constraintResource, vf.createIRI("http://www.w3.org/ns/shacl#prefixes"), vf.createIRI(ns));
+	}
+
+	void createConstraints(String ns, Resource targetClass) {
+		ValueFactory vf = repository.getValueFactory();
 
 		for (int c = 0; c < constraintsPerClass; c++) {
 			IRI constraintProperty = vf.createIRI(ns + "c" + c);
@@ -96,12 +142,7 @@ public abstract class InferencingBenchmarkBase {
 				expression.append("@p" + p);
 			}
 
-			Resource constraintResource = vf.createBNode();
-			connection.add(targetClass, constraint, constraintResource);
-			connection.add(constraintResource, RDF.TYPE, constraintClass);
-			connection.add(constraintResource, onProperty, constraintProperty);
-			connection.add(constraintResource, expressionString, vf.createLiteral(expression.toString()));
-			connection.add(constraintResource, prefixes, prefixesResource);
+			createConstraint(ns, targetClass, constraintProperty, expression.toString());
 
 			// System.out.println("c: " + c + " -> " + expression);
 		}
@@ -136,6 +177,7 @@ public abstract class InferencingBenchmarkBase {
 					}
 				}
 			}
+			createTrees(ns, rnd);
 			connection.commit();
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -146,21 +188,130 @@ public abstract class InferencingBenchmarkBase {
 		}
 	}
 
-	@Setup(Level.Invocation)
-	public void beforeClass(BenchmarkParams params) {
+	/**
+	 * Creates trees of nodes where the value of each node is its weight plus the aggregated values of its
+	 * children. Hence, the values of the roots depend on all nodes of their trees.
+	 */
+	void createTrees(String ns, Random rnd) {
+		ValueFactory vf = repository.getValueFactory();
+		IRI nodeClass = vf.createIRI(ns + "Node");
+		IRI children = vf.createIRI(ns + "children");
+		IRI weight = vf.createIRI(ns + "weight");
+		if (trees > 0) {
+			createConstraint(ns, nodeClass, vf.createIRI(ns + "value"),
+					"@weight + " + aggregate + "(@@children, $c -> @value($c))");
+		}
+
+		for (int t = 0; t < trees; t++) {
+			IRI root = treeNode(t, "");
+			List<IRI> level = List.of(root);
+			for (int depth = 0; depth <= treeDepth; depth++) {
+				List<IRI> nextLevel = new ArrayList<>();
+				for (IRI node : level) {
+					connection.add(node, RDF.TYPE, nodeClass);
+					connection.add(node, weight, vf.createLiteral(1 + rnd.nextInt(10)));
+					if (depth < treeDepth) {
+						for (int i = 0; i < fanIn; i++) {
+							IRI child = vf.createIRI(node.stringValue() + "-" + i);
+							connection.add(node, children, child);
+							nextLevel.add(child);
+						}
+					}
+				}
+				level = nextLevel;
+			}
+			if (cycles) {
+				connection.add(treeNode(t, "-0".repeat(treeDepth)), children, root);
+			}
+		}
+	}
+
+	/**
+	 * Returns the node of the given tree with the given path of child indexes, e.g. <code>-0-3</code>.
+	 */
+	IRI treeNode(int tree, String path) {
+		return repository.getValueFactory().createIRI("http://example.org/node-" + tree + path);
+	}
+
+	/**
+	 * Returns a random leaf of a random tree.
+	 */
+	IRI randomLeaf(Random rnd) {
+		StringBuilder path = new StringBuilder();
+		for (int depth = 0; depth < treeDepth; depth++) {
+			path.append('-').append(rnd.nextInt(fanIn));
+		}
+		return treeNode(rnd.nextInt(trees), path.toString());
+	}
+
+	/**
+	 * Changes the weight of the given tree node in its own transaction.
+	 */
+	protected void updateWeight(IRI node, Random rnd) {
+		ValueFactory vf = repository.getValueFactory();
+		IRI weight = vf.createIRI("http://example.org/weight");
+
+		connection.begin(IsolationLevels.NONE);
+		try {
+			connection.remove(node, weight, null);
+			connection.add(node, weight, vf.createLiteral(1 + rnd.nextInt(10)));
+			connection.commit();
+		} finally {
+			if (connection.isActive()) {
+				connection.rollback();
+			}
+		}
+	}
+
+	/**
+	 * Changes the value of a shared property of one instance in its own transaction.
+	 */
+	protected void updateResource(Random rnd) {
+		ValueFactory vf = repository.getValueFactory();
+		String ns = "http://example.org/";
+		Resource r = vf.createIRI(ns + "instance-" + rnd.nextInt(classes) + "-" + rnd.nextInt(instancesPerClass));
+		IRI property = vf.createIRI(ns + "p" + rnd.nextInt(sharedPropertiesPerConstraint));
+
+		connection.begin(IsolationLevels.NONE);
+		try {
+			connection.remove(r, property, null);
+			connection.add(r, property, vf.createLiteral(1 + rnd.nextInt(10)));
+			connection.commit();
+		} finally {
+			if (connection.isActive()) {
+				connection.rollback();
+			}
+		}
+	}
+
+	protected NotifyingSail createStore(File dataDir) {
+		switch (store) {
+			case "memory":
+				return new MemoryStore();
+			case "native":
+				NativeStore nativeStore = new NativeStore(dataDir);
+				nativeStore.setForceSync(false);
+				return nativeStore;
+			case "lmdb":
+				LmdbStoreConfig config = new LmdbStoreConfig();
+				config.setForceSync(false);
+				config.setTripleDBSize(100_000_000);
+				config.setValueDBSize(100_000_000);
+				return new LmdbStore(dataDir, config);
+			default:
+				throw new IllegalArgumentException("Unknown store: " + store);
+		}
+	}
+
+	protected void openRepository() {
 		if (connection != null) {
 			connection.close();
 			connection = null;
 		}
 		file = Files.newTemporaryFolder();
 
-		/*NumerateWebSailConfig config = new NumerateWebSailConfig();
-		config.setForceSync(false);
-		config.setTripleDBSize(100_000_000);
-		config.setValueDBSize(100_000_000);
-		NotifyingSail store = new LmdbStore(file, config);*/
-		MemoryStore store = new MemoryStore();
-		NumerateWebSail sail = createInferencer(store);
+		NumerateWebSail sail = createInferencer(createStore(file));
+		sail.setCacheProvider(cacheProvider);
 
 		repository = new SailRepository(sail);
 		connection = repository.getConnection();
@@ -170,8 +321,7 @@ public abstract class InferencingBenchmarkBase {
 
 	protected abstract NumerateWebSail createInferencer(NotifyingSail store);
 
-	@TearDown(Level.Invocation)
-	public void afterClass() throws IOException {
+	protected void closeRepository() throws IOException {
 		if (connection != null) {
 			connection.close();
 			connection = null;
@@ -179,4 +329,26 @@ public abstract class InferencingBenchmarkBase {
 		repository.shutDown();
 		FileUtils.deleteDirectory(file);
 	}
+
+	/**
+	 * Runs all inferencing benchmarks.
+	 */
+	public static void main(String[] args) throws RunnerException {
+		run(InferencingBenchmarkBase.class.getPackageName() + ".*Benchmark", "inferencing");
+	}
+
+	/**
+	 * Runs the benchmarks matching the given pattern and writes the results as JSON to
+	 * <code>target/jmh-&lt;name&gt;.json</code>.
+	 */
+	static void run(String include, String name) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(include) // adapt to control which benchmark tests to run
+				.forks(1)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-" + name + ".json")
+				.build();
+
+		new Runner(opt).run();
+	}
 }
\ No newline at end of file
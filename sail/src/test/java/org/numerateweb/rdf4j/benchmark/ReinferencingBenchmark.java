@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j.benchmark;
+
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.numerateweb.rdf4j.NumerateWebSail;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks a full inferencing run over data that has already been loaded.
+ */
+public class ReinferencingBenchmark extends InferencingBenchmarkBase {
+
+	NumerateWebSail sail;
+	Random rnd;
+
+	public static void main(String[] args) throws RunnerException {
+		run("ReinferencingBenchmark", "reinferencing");
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		openRepository();
+		addDataInOneTransaction();
+		// all following commits trigger a full inferencing run
+		sail.setIncrementalInference(false);
+		rnd = new Random(1337);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		closeRepository();
+	}
+
+	@Benchmark
+	public void reinference() {
+		updateResource(rnd);
+	}
+
+	@Override
+	protected NumerateWebSail createInferencer(NotifyingSail store) {
+		sail = new NumerateWebSail(store);
+		sail.setIncrementalInference(true);
+		return sail;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j.benchmark;
+
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.numerateweb.rdf4j.NumerateWebSail;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks incremental inferencing for transactions that change a single value of one resource.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResourceUpdateBenchmark extends InferencingBenchmarkBase {
+
+	Random rnd;
+
+	public static void main(String[] args) throws RunnerException {
+		run("ResourceUpdateBenchmark", "resource-update");
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		openRepository();
+		addDataInOneTransaction();
+		rnd = new Random(1337);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		closeRepository();
+	}
+
+	@Benchmark
+	public void updateResource() {
+		updateResource(rnd);
+	}
+
+	@Override
+	protected NumerateWebSail createInferencer(NotifyingSail store) {
+		NumerateWebSail inferencer = new NumerateWebSail(store);
+		inferencer.setIncrementalInference(true);
+		return inferencer;
+	}
+}
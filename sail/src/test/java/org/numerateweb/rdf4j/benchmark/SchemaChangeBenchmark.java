@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023 Numerate Web contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.numerateweb.rdf4j.benchmark;
+
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.numerateweb.rdf4j.NumerateWebSail;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Benchmarks the inferencing after a constraint of one class has been changed.
+ */
+public class SchemaChangeBenchmark extends InferencingBenchmarkBase {
+
+	Random rnd;
+	int changes;
+
+	public static void main(String[] args) throws RunnerException {
+		run("SchemaChangeBenchmark", "schema-change");
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		openRepository();
+		addDataInOneTransaction();
+		rnd = new Random(1337);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		closeRepository();
+	}
+
+	@Benchmark
+	public void changeConstraint() {
+		ValueFactory vf = repository.getValueFactory();
+		String ns = "http://example.org/";
+		String nw = "http://numerateweb.org/vocab/math/rules#";
+		IRI constraint = vf.createIRI(nw + "constraint");
+		IRI onProperty = vf.createIRI(nw + "onProperty");
+		IRI expressionString = vf.createIRI(nw + "expressionString");
+		IRI clazz = vf.createIRI(ns + "Class-" + rnd.nextInt(classes));
+		IRI constraintProperty = vf.createIRI(ns + "c0");
+
+		connection.begin(IsolationLevels.NONE);
+		try {
+			for (Statement stmt : connection.getStatements(clazz, constraint, null)) {
+				Resource constraintResource = (Resource) stmt.getObject();
+				if (connection.hasStatement(constraintResource, onProperty, constraintProperty, false)) {
+					connection.remove(constraintResource, expressionString, null);
+					// alternate between two different expressions
+					connection.add(constraintResource, expressionString,
+							vf.createLiteral("@p0 * " + (1 + changes++ % 2)));
+				}
+			}
+			connection.commit();
+		} finally {
+			if (connection.isActive()) {
+				connection.rollback();
+			}
+		}
+	}
+
+	@Override
+	protected NumerateWebSail createInferencer(NotifyingSail store) {
+		NumerateWebSail inferencer = new NumerateWebSail(store);
+		inferencer.setIncrementalInference(true);
+		return inferencer;
+	}
+}